@@ -0,0 +1,97 @@
+package sio.groupK.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import sio.groupK.gui.model.TspDataSource;
+import sio.tsp.TspData;
+import sio.tsp.TspDistanceStorage;
+
+/**
+ * Compares reading distances pair by pair through {@link TspData#getDistance(int, int)}
+ * with the bulk accessors, for every distance storage. Each invocation reads
+ * one full row, either in city order or through a permutation of the cities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceAccessBenchmark {
+
+    @Param({"RL1889"})
+    public TspDataSource dataset;
+
+    @Param({"MATRIX", "TRIANGULAR", "ROW_CACHE", "ON_THE_FLY"})
+    public TspDistanceStorage storage;
+
+    private TspData data;
+    private int[] cities;
+    private int[] row;
+    private int source;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        data = TspData.fromFile(dataset.path(), storage);
+        int n = data.getNumberOfCities();
+        row = new int[n];
+
+        // shuffle the cities with a fixed seed, so that gathers do not read in order
+        var random = new Random(42);
+        cities = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = random.nextInt(i + 1);
+            cities[i] = cities[j];
+            cities[j] = i;
+        }
+    }
+
+    /**
+     * Moves to the next source city, so that every row gets read.
+     */
+    private int nextSource() {
+        source = source + 1 == data.getNumberOfCities() ? 0 : source + 1;
+        return source;
+    }
+
+    @Benchmark
+    public long rowPerPair() {
+        int i = nextSource();
+        long sum = 0;
+        for (int j = 0; j < data.getNumberOfCities(); j++) {
+            sum += data.getDistance(i, j);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long rowBulk() {
+        data.getDistances(nextSource(), row);
+        long sum = 0;
+        for (int d : row) {
+            sum += d;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long gatherPerPair() {
+        int i = nextSource();
+        long sum = 0;
+        for (int city : cities) {
+            sum += data.getDistance(i, city);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long gatherBulk() {
+        data.getDistances(nextSource(), cities, cities.length, row);
+        long sum = 0;
+        for (int d : row) {
+            sum += d;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,110 @@
+package sio.groupK.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import sio.groupK.gui.model.TspDataSource;
+import sio.groupK.gui.model.TspHeuristic;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspInstrumentation;
+import sio.tsp.TspTour;
+import sio.tsp.TspWorkspace;
+
+/**
+ * Measures the computation of a single tour by every registered heuristic,
+ * on every bundled dataset. The data is loaded once per trial so that only
+ * the heuristic itself is measured, either allocating a new tour or reusing
+ * a workspace. A third benchmark forks with the instrumentation counters
+ * enabled, to report the distances read and computed by each tour.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeuristicBenchmark {
+
+    /**
+     * Dataset to solve, every bundled dataset by default.
+     */
+    @Param
+    public TspDataSource dataset;
+
+    /**
+     * Heuristic to run, every heuristic of the visualiser by default except
+     * NN_ILS, which runs until its time limit rather than to completion.
+     */
+    @Param({"NN", "DENN", "HILBERT", "GREEDY", "NEAREST_INSERTION", "FARTHEST_INSERTION", "CHEAPEST_INSERTION",
+            "NN_2OPT", "DENN_2OPT", "NN_LK", "DENN_LK"})
+    public TspHeuristic heuristic;
+
+    /**
+     * Starting city, taken modulo the number of cities of the dataset.
+     */
+    @Param({"0", "250", "500"})
+    public int startCity;
+
+    private TspData data;
+    private TspConstructiveHeuristic instance;
+    private TspWorkspace workspace;
+    private int start;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        data = TspData.fromFile(dataset.path());
+        instance = heuristic.getHeuristicInstance();
+        workspace = instance.newWorkspace(data);
+        start = startCity % data.getNumberOfCities();
+    }
+
+    @Benchmark
+    public TspTour computeTour() {
+        return instance.computeTour(data, start);
+    }
+
+    @Benchmark
+    public long computeTourInWorkspace() {
+        return workspace.computeTour(start);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + TspInstrumentation.PROPERTY + "=true")
+    public long computeTourCountingDistances(DistanceCounts counts) {
+        long length = workspace.computeTour(start);
+        counts.tourComputed();
+        return length;
+    }
+
+    /**
+     * Distances read and computed per tour. JMH sums event counters over the
+     * measurement iterations, so each iteration reports its share of the
+     * average.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DistanceCounts {
+        public double lookupsPerTour;
+        public double computationsPerTour;
+
+        private long tours;
+        private long lookups;
+        private long computations;
+        private int iterations;
+
+        @Setup(Level.Iteration)
+        public void reset(BenchmarkParams params) {
+            iterations = params.getMeasurement().getCount();
+            tours = 0;
+            lookups = TspInstrumentation.distanceLookups();
+            computations = TspInstrumentation.distanceComputations();
+        }
+
+        void tourComputed() {
+            tours++;
+            lookupsPerTour = (double) (TspInstrumentation.distanceLookups() - lookups) / tours / iterations;
+            computationsPerTour = (double) (TspInstrumentation.distanceComputations() - computations) / tours / iterations;
+        }
+    }
+}
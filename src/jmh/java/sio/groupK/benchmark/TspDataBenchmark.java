@@ -0,0 +1,29 @@
+package sio.groupK.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import sio.groupK.gui.model.TspDataSource;
+import sio.tsp.TspData;
+
+/**
+ * Measures the loading of every bundled dataset.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class TspDataBenchmark {
+
+    /**
+     * Dataset to load, every bundled dataset by default.
+     */
+    @Param
+    public TspDataSource dataset;
+
+    @Benchmark
+    public TspData fromFile() throws Exception {
+        return TspData.fromFile(dataset.path());
+    }
+}
@@ -0,0 +1,240 @@
+package sio.groupK;
+
+import java.util.Objects;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+
+/**
+ * Cheapest insertion constructive heuristic for the TSP: the city whose
+ * insertion lengthens the tour the least is inserted next, on the edge
+ * giving that cost.
+ *
+ * <p>Every unvisited city keeps its cheapest insertion cost and edge, in a
+ * priority queue ordered by cost. Inserting a city replaces one edge by two,
+ * and the costs of the other cities are only compared with the two new
+ * edges. A city whose cheapest edge was the replaced one keeps its cost as a
+ * lower bound, and the whole tour is only scanned again if it reaches the
+ * head of the queue. A tour takes O(n²) to compute in practice.</p>
+ *
+ * <p>The tour is typically 15 to 25% longer than the optimal one.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class CheapestInsertion implements TspConstructiveHeuristic {
+
+    /**
+     * {@inheritDoc}
+     * @param data Data of problem instance
+     * @param startCityIndex Index of starting city, if needed by the implementation
+     *
+     * @return Solution found by the heuristic
+     */
+    @Override
+    public TspTour computeTour(TspData data, int startCityIndex) {
+        // fail-fast if data integrity isn't respected
+        Objects.requireNonNull(data, "data must not be null");
+        int n = data.getNumberOfCities();
+        if (startCityIndex < 0 || startCityIndex >= n) {
+            throw new IllegalArgumentException("start city index out of bounds");
+        }
+
+        // the tour is a cycle of next indices, starting with the start city alone
+        int[] next = new int[n];
+        next[startCityIndex] = startCityIndex;
+
+        // cheapest insertion of every unvisited city, on the edge from after[city] to its next city
+        long[] costs = new long[n];
+        int[] after = new int[n];
+        // cities whose cost is only a lower bound, their cheapest edge having been replaced
+        boolean[] stale = new boolean[n];
+        var queue = new InsertionQueue(costs);
+
+        // unvisited cities in a dense array, and the position of every city in it
+        int[] remaining = new int[n];
+        int[] slot = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (i != startCityIndex) {
+                costs[i] = 2L * data.getDistance(startCityIndex, i);
+                after[i] = startCityIndex;
+                slot[i] = count;
+                remaining[count++] = i;
+                queue.add(i);
+            }
+        }
+
+        while (count > 0) {
+            Interruption.check();
+            int city = queue.peek();
+            while (stale[city]) {
+                scan(data, next, startCityIndex, city, costs, after);
+                stale[city] = false;
+                queue.update(city);
+                city = queue.peek();
+            }
+            queue.poll();
+            int last = remaining[--count];
+            remaining[slot[city]] = last;
+            slot[last] = slot[city];
+
+            // the edge (a, b) is replaced by (a, city) and (city, b)
+            int a = after[city];
+            int b = next[a];
+            next[a] = city;
+            next[city] = b;
+            int dac = data.getDistance(a, city);
+            int dcb = data.getDistance(city, b);
+
+            for (int i = 0; i < count; i++) {
+                int u = remaining[i];
+                if (after[u] == a) {
+                    // the other edges cost at least as much as the replaced one
+                    stale[u] = true;
+                }
+
+                // a new edge strictly cheaper than the bound is the cheapest of the tour
+                int du = data.getDistance(city, u);
+                long cost = (long) data.getDistance(a, u) + du - dac;
+                boolean cheaper = false;
+                if (cost < costs[u]) {
+                    costs[u] = cost;
+                    after[u] = a;
+                    stale[u] = false;
+                    cheaper = true;
+                }
+                cost = (long) du + data.getDistance(u, b) - dcb;
+                if (cost < costs[u]) {
+                    costs[u] = cost;
+                    after[u] = city;
+                    stale[u] = false;
+                    cheaper = true;
+                }
+                if (cheaper) {
+                    queue.update(u);
+                }
+            }
+        }
+
+        // read the tour from the start city
+        int[] tour = new int[n];
+        long distance = 0;
+        int city = startCityIndex;
+        for (int i = 0; i < n; i++) {
+            tour[i] = city;
+            if (i > 0) {
+                distance += data.getDistance(tour[i - 1], city);
+            }
+            city = next[city];
+        }
+
+        return new TspTour(data, tour, distance);
+    }
+
+    /**
+     * Finds the cheapest insertion of a city over every edge of the tour.
+     */
+    private static void scan(TspData data, int[] next, int start, int city, long[] costs, int[] after) {
+        long bestCost = Long.MAX_VALUE;
+        int best = start;
+        int a = start;
+        do {
+            int b = next[a];
+            long cost = (long) data.getDistance(a, city) + data.getDistance(city, b) - data.getDistance(a, b);
+            if (cost < bestCost) {
+                best = a;
+                bestCost = cost;
+            }
+            a = b;
+        } while (a != start);
+        costs[city] = bestCost;
+        after[city] = best;
+    }
+
+    /**
+     * Binary min-heap of cities ordered by insertion cost, then index, which
+     * knows the position of every city so that its cost can change.
+     */
+    private static final class InsertionQueue {
+        private final long[] costs;
+        private final int[] heap;
+        private final int[] position;
+        private int size;
+
+        InsertionQueue(long[] costs) {
+            this.costs = costs;
+            this.heap = new int[costs.length];
+            this.position = new int[costs.length];
+        }
+
+        void add(int city) {
+            heap[size] = city;
+            position[city] = size;
+            siftUp(size++);
+        }
+
+        int peek() {
+            return heap[0];
+        }
+
+        int poll() {
+            int city = heap[0];
+            size--;
+            if (size > 0) {
+                move(heap[size], 0);
+                siftDown(0);
+            }
+            return city;
+        }
+
+        /**
+         * Restores the order after the cost of a queued city changed.
+         */
+        void update(int city) {
+            int i = position[city];
+            siftUp(i);
+            siftDown(position[city]);
+        }
+
+        private void siftUp(int i) {
+            int city = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(city, heap[parent])) {
+                    break;
+                }
+                move(heap[parent], i);
+                i = parent;
+            }
+            move(city, i);
+        }
+
+        private void siftDown(int i) {
+            int city = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!before(heap[child], city)) {
+                    break;
+                }
+                move(heap[child], i);
+                i = child;
+            }
+            move(city, i);
+        }
+
+        private void move(int city, int i) {
+            heap[i] = city;
+            position[city] = i;
+        }
+
+        private boolean before(int a, int b) {
+            return costs[a] < costs[b] || (costs[a] == costs[b] && a < b);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package sio.groupK;
+
+import java.util.Objects;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+
+/**
+ * Base of the insertion heuristics selecting the next city by its distance
+ * to the cities already in the tour, then inserting it between the two
+ * consecutive cities where it lengthens the tour the least.
+ *
+ * <p>The unvisited cities are kept in a dense array shrunk by swap-remove,
+ * along with their distance to the tour. After each insertion, one pass
+ * updates these distances with the last inserted city only, and a second
+ * pass selects the next city, so that every insertion takes O(n) and a tour
+ * O(n²).</p>
+ *
+ * @author Loïc Herman
+ */
+abstract class DistanceInsertion implements TspConstructiveHeuristic {
+
+    private final boolean farthest;
+
+    /**
+     * @param farthest true to select the city farthest from the tour, false
+     *                 to select the nearest one
+     */
+    DistanceInsertion(boolean farthest) {
+        this.farthest = farthest;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param data Data of problem instance
+     * @param startCityIndex Index of starting city, if needed by the implementation
+     *
+     * @return Solution found by the heuristic
+     */
+    @Override
+    public TspTour computeTour(TspData data, int startCityIndex) {
+        // fail-fast if data integrity isn't respected
+        Objects.requireNonNull(data, "data must not be null");
+        int n = data.getNumberOfCities();
+        if (startCityIndex < 0 || startCityIndex >= n) {
+            throw new IllegalArgumentException("start city index out of bounds");
+        }
+
+        // the tour is a cycle of next indices, starting with the start city alone
+        int[] next = new int[n];
+        next[startCityIndex] = startCityIndex;
+
+        // unvisited cities, and their distance to the tour, in the same dense order
+        int[] remaining = new int[n];
+        int[] closest = new int[n];
+        int[] distances = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (i != startCityIndex) {
+                remaining[count++] = i;
+            }
+        }
+        data.getDistances(startCityIndex, remaining, count, closest);
+        int selected = select(remaining, closest, count);
+
+        while (count > 0) {
+            Interruption.check();
+            int city = remaining[selected];
+            count--;
+            remaining[selected] = remaining[count];
+            closest[selected] = closest[count];
+
+            // insert the city on the edge it lengthens the least
+            int best = startCityIndex;
+            long bestCost = Long.MAX_VALUE;
+            int a = startCityIndex;
+            do {
+                int b = next[a];
+                long cost = (long) data.getDistance(a, city) + data.getDistance(city, b) - data.getDistance(a, b);
+                if (cost < bestCost) {
+                    best = a;
+                    bestCost = cost;
+                }
+                a = b;
+            } while (a != startCityIndex);
+            next[city] = next[best];
+            next[best] = city;
+
+            // only the new city can bring the others closer to the tour
+            data.getDistances(city, remaining, count, distances);
+            for (int i = 0; i < count; i++) {
+                closest[i] = Math.min(closest[i], distances[i]);
+            }
+            selected = select(remaining, closest, count);
+        }
+
+        // read the tour from the start city
+        int[] tour = new int[n];
+        long distance = 0;
+        int city = startCityIndex;
+        for (int i = 0; i < n; i++) {
+            tour[i] = city;
+            if (i > 0) {
+                distance += data.getDistance(tour[i - 1], city);
+            }
+            city = next[city];
+        }
+
+        return new TspTour(data, tour, distance);
+    }
+
+    /**
+     * Selects the next city to insert, the lowest index on ties.
+     * @return position of the city in the unvisited array, -1 if it is empty
+     */
+    private int select(int[] remaining, int[] closest, int count) {
+        int selected = -1;
+        for (int i = 0; i < count; i++) {
+            if (selected < 0) {
+                selected = i;
+                continue;
+            }
+            int d = closest[i];
+            int best = closest[selected];
+            if ((farthest ? d > best : d < best) || (d == best && remaining[i] < remaining[selected])) {
+                selected = i;
+            }
+        }
+        return selected;
+    }
+}
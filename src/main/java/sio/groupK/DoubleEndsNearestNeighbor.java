@@ -1,18 +1,48 @@
 package sio.groupK;
 
-import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.LongSupplier;
 import sio.tsp.TspConstructiveHeuristic;
 import sio.tsp.TspData;
+import sio.tsp.TspSpatialIndex;
 import sio.tsp.TspTour;
+import sio.tsp.TspWorkspace;
 
 /**
  * Double ends nearest neighbor constructive heuristic for the TSP
  *
+ * <p>The nearest unvisited city of each end of the chain is kept between
+ * steps, and only searched again when its end moved or when the other end
+ * took it, which halves the distance evaluations of scanning every city
+ * from both ends.</p>
+ *
+ * <p>Tours computed against a bound are abandoned as soon as their partial
+ * length plus a {@link RemainingBound} exceeds it.</p>
+ *
  * @author Loïc Herman
  */
 public final class DoubleEndsNearestNeighbor implements TspConstructiveHeuristic {
 
+    private final int spatialIndexThreshold;
+
+    /**
+     * Creates the heuristic, using a spatial index for instances of at least
+     * {@link NearestNeighbor#DEFAULT_SPATIAL_INDEX_THRESHOLD} cities.
+     */
+    public DoubleEndsNearestNeighbor() {
+        this(NearestNeighbor.DEFAULT_SPATIAL_INDEX_THRESHOLD);
+    }
+
+    /**
+     * Creates the heuristic, using a spatial index to find the nearest unvisited
+     * city for instances of at least the given number of cities, and a linear
+     * scan otherwise. Both produce the same tours.
+     * @param spatialIndexThreshold minimal number of cities to use the spatial index
+     */
+    public DoubleEndsNearestNeighbor(int spatialIndexThreshold) {
+        this.spatialIndexThreshold = spatialIndexThreshold;
+    }
+
     /**
      * {@inheritDoc}
      * @param data Data of problem instance
@@ -24,100 +54,282 @@ public final class DoubleEndsNearestNeighbor implements TspConstructiveHeuristic
     public TspTour computeTour(TspData data, int startCityIndex) {
         // fail-fast if data integrity isn't respected
         Objects.requireNonNull(data, "data must not be null");
-        if (startCityIndex < 0 || startCityIndex > data.getNumberOfCities()) {
-            throw new IllegalArgumentException("start city index out of bounds");
-        }
-
-        // allocate the array of next indices and initialize it to -1
-        int[] next = new int[data.getNumberOfCities()];
-        Arrays.fill(next, -1);
-        long distance = 0;
-
-        // Find first nearest city from start city
-        int s = startCityIndex;
-        int t = startCityIndex;
-        next[s] = s;
-
-        // Loop through while there are still cities to visit
-        while (true) {
-            int nearest = -1;
-            int end = -1;
-            long nearestDistance = Long.MAX_VALUE;
-
-            // iterate over every city to find the nearest one
-            for (int i = 0; i < data.getNumberOfCities(); i++) {
-                if (next[i] >= 0) {
-                    // if the city has already been visited, skip it
-                    continue;
-                }
 
-                // else, compute the distance between the current city
-                // and both ends of the segment, and check if the distance
-                // is the smallest one found so far (for both ends)
-                var d1 = data.getDistance(s, i);
-                var d2 = data.getDistance(t, i);
+        // the workspace is not reused, so its tour can be kept without a copy
+        var workspace = new Workspace(data);
+        long distance = workspace.computeTour(startCityIndex);
+        return new TspTour(data, workspace.tour, distance);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param data Data of problem instance
+     *
+     * @return New workspace, to be used by a single thread
+     */
+    @Override
+    public TspWorkspace newWorkspace(TspData data) {
+        Objects.requireNonNull(data, "data must not be null");
+        return new Workspace(data);
+    }
+
+    /**
+     * Buffers of the heuristic for one instance, allocated once and reused
+     * by every tour.
+     */
+    private final class Workspace implements TspWorkspace {
+        private final TspData data;
+        private final int[] next;
+        private final int[] tour;
+        private final UnvisitedCities unvisited;
+        private RemainingBound remaining;
+        private long length = -1;
+
+        Workspace(TspData data) {
+            int n = data.getNumberOfCities();
+            this.data = data;
+            this.next = new int[n];
+            this.tour = new int[n];
+            this.unvisited = n >= spatialIndexThreshold
+                    ? new IndexedCities(data)
+                    : new ScannedCities(data);
+        }
+
+        @Override
+        public TspData data() {
+            return data;
+        }
+
+        @Override
+        public long computeTour(int startCityIndex) {
+            // fail-fast if data integrity isn't respected
+            if (startCityIndex < 0 || startCityIndex >= tour.length) {
+                throw new IllegalArgumentException("start city index out of bounds");
+            }
+
+            length = visit(startCityIndex, null);
+            return length;
+        }
+
+        @Override
+        public long computeTour(int startCityIndex, LongSupplier bound) {
+            Objects.requireNonNull(bound, "bound must not be null");
+            if (startCityIndex < 0 || startCityIndex >= tour.length) {
+                throw new IllegalArgumentException("start city index out of bounds");
+            }
+
+            // the bound is only built by the workspaces which need it
+            if (remaining == null) {
+                remaining = new RemainingBound(data);
+            }
+            remaining.reset();
+            remaining.visit(startCityIndex);
+
+            length = visit(startCityIndex, bound);
+            return length;
+        }
+
+        @Override
+        public int cityAt(int position) {
+            if (length < 0) {
+                throw new IllegalStateException("no tour computed yet");
+            }
+            return tour[position];
+        }
+
+        @Override
+        public TspTour toTour() {
+            if (length < 0) {
+                throw new IllegalStateException("no tour computed yet");
+            }
+            return new TspTour(data, tour.clone(), length);
+        }
+
+        /**
+         * Builds the chain from the given city, then fills the tour.
+         * @param bound length above which the tour is abandoned, null to
+         * always complete it
+         * @return the length of the tour, or {@link #ABANDONED}
+         */
+        private long visit(int startCityIndex, LongSupplier bound) {
+            long distance = 0;
+
+            // Find first nearest city from start city
+            int s = startCityIndex;
+            int t = startCityIndex;
+            next[s] = s;
+
+            unvisited.reset();
+            unvisited.remove(s);
+
+            // nearest unvisited city of both ends: only the end that moved needs
+            // a new search, unless it took the nearest city of the other end
+            int ns = unvisited.nearest(s);
+            int nt = ns;
+
+            // Loop through while there are still cities to visit
+            while (ns >= 0) {
+                Interruption.check();
 
-                if (d1 < nearestDistance) {
-                    nearest = i;
+                // keep the city the scan of every city would select: the
+                // closest, then the lowest index, then the start of the chain
+                int nearest;
+                int end;
+                long nearestDistance;
+                long ds = data.getDistance(s, ns);
+                long dt = data.getDistance(t, nt);
+                if (dt < ds || (dt == ds && nt < ns)) {
+                    nearest = nt;
+                    end = t;
+                    nearestDistance = dt;
+                } else {
+                    nearest = ns;
                     end = s;
-                    nearestDistance = d1;
+                    nearestDistance = ds;
                 }
+                unvisited.remove(nearest);
 
-                if (d2 < nearestDistance) {
-                    nearest = i;
-                    end = t;
-                    nearestDistance = d2;
+                // else, insert it into the correct end of the
+                // chain and update the distance
+                if (end == s) {
+                    // inserting at the start requires us to update
+                    // the next index of our new start to the previous
+                    // start and the next index of the current end to
+                    // our new start. Then, we update the start index.
+                    next[nearest] = s;
+                    next[t] = nearest;
+                    s = nearest;
+                    ns = unvisited.nearest(s);
+                    if (nt == nearest) {
+                        nt = unvisited.nearest(t);
+                    }
+                } else {
+                    // inserting at the end requires us to update
+                    // the next index of our previous end to the new
+                    // end and the next index of our new end to the
+                    // start. Then, we update the end index.
+                    next[t] = nearest;
+                    next[nearest] = s;
+                    t = nearest;
+                    nt = unvisited.nearest(t);
+                    if (ns == nearest) {
+                        ns = unvisited.nearest(s);
+                    }
                 }
-            }
 
-            // if the nearest city is still -1, it means that
-            // there are no more cities to visit
-            if (nearest < 0) {
-                break;
+                // update the distance with the one
+                // from the nearest end we selected
+                distance += nearestDistance;
+
+                // every unvisited city will be joined to one of the ends
+                if (bound != null) {
+                    remaining.visit(nearest);
+                    if (distance + remaining.get() > bound.getAsLong()) {
+                        return ABANDONED;
+                    }
+                }
             }
 
-            // else, insert it into the correct end of the
-            // chain and update the distance
-            if (end == s) {
-                // inserting at the start requires us to update
-                // the next index of our new start to the previous
-                // start and the next index of the current end to
-                // our new start. Then, we update the start index.
-                next[nearest] = s;
-                next[t] = nearest;
-                s = nearest;
-            } else {
-                // inserting at the end requires us to update
-                // the next index of our previous end to the new
-                // end and the next index of our new end to the
-                // start. Then, we update the end index.
-                next[t] = nearest;
-                next[nearest] = s;
-                t = nearest;
+            // when we are done, fill the tour
+            fillTour(startCityIndex);
+            return distance;
+        }
+
+        /**
+         * Simple method to fill the tour from the array of next indices
+         * @param s the starting city
+         */
+        private void fillTour(int s) {
+            for (int i = 0; i < tour.length; i++) {
+                tour[i] = s;
+                s = next[s];
             }
+        }
+    }
+
+    /**
+     * Set of unvisited cities, able to find the nearest one to a city.
+     */
+    private interface UnvisitedCities {
+        /**
+         * Marks every city as unvisited again.
+         */
+        void reset();
+
+        void remove(int city);
+
+        /**
+         * @return the nearest unvisited city, the lowest index on ties, or -1
+         * if every city was visited
+         */
+        int nearest(int city);
+    }
+
+    /**
+     * Unvisited cities in a spatial index.
+     */
+    private static final class IndexedCities implements UnvisitedCities {
+        private final TspSpatialIndex index;
+
+        IndexedCities(TspData data) {
+            this.index = new TspSpatialIndex(data);
+        }
 
-            // update the distance with the one
-            // from the nearest end we selected
-            distance += nearestDistance;
+        @Override
+        public void reset() {
+            index.reset();
         }
 
-        // when we are done, return the tour
-        return new TspTour(data, computeTour(next, startCityIndex), distance);
+        @Override
+        public void remove(int city) {
+            index.remove(city);
+        }
+
+        @Override
+        public int nearest(int city) {
+            return index.nearest(city);
+        }
     }
 
     /**
-     * Simple method to compute the tour from the array of next indices
-     * @param next the array of next indices
-     * @param s the starting city
-     * @return an array of the city indexes, in order of visit
+     * Unvisited cities in a dense array shrunk by swap-remove, scanned in
+     * full to find the nearest one.
      */
-    private int[] computeTour(int[] next, int s) {
-        var res = new int[next.length];
-        for (int i = 0; i < res.length; i++) {
-            res[i] = s;
-            s = next[s];
+    private static final class ScannedCities implements UnvisitedCities {
+        private final TspData data;
+        private final int[] cities;
+        private final int[] slots;
+        private final int[] distances;
+        private int count;
+
+        ScannedCities(TspData data) {
+            int n = data.getNumberOfCities();
+            this.data = data;
+            this.cities = new int[n];
+            this.slots = new int[n];
+            this.distances = new int[n];
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < cities.length; i++) {
+                cities[i] = i;
+                slots[i] = i;
+            }
+            count = cities.length;
         }
 
-        return res;
+        @Override
+        public void remove(int city) {
+            int last = cities[--count];
+            cities[slots[city]] = last;
+            slots[last] = slots[city];
+        }
+
+        @Override
+        public int nearest(int city) {
+            int k = data.getNearest(city, cities, count, distances);
+            return k < 0 ? -1 : cities[k];
+        }
     }
 }
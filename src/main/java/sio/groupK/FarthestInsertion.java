@@ -0,0 +1,17 @@
+package sio.groupK;
+
+/**
+ * Farthest insertion constructive heuristic for the TSP: the city farthest
+ * from the tour is inserted next, where it lengthens the tour the least.
+ *
+ * <p>The tour takes O(n²) to compute, and is typically 10 to 20% longer than
+ * the optimal one.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class FarthestInsertion extends DistanceInsertion {
+
+    public FarthestInsertion() {
+        super(true);
+    }
+}
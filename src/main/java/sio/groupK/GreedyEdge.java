@@ -0,0 +1,209 @@
+package sio.groupK;
+
+import java.util.Arrays;
+import java.util.Objects;
+import sio.tsp.TspCandidates;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspSpatialIndex;
+import sio.tsp.TspTour;
+
+/**
+ * Greedy edge constructive heuristic for the TSP: edges between candidate
+ * neighbours are taken from the shortest, unless they would give a city a
+ * third edge or close a cycle. The resulting paths are then joined, each one
+ * to the nearest end of another path.
+ *
+ * <p>With k candidates per city, the tour takes O(n k log(n k)) to compute,
+ * and is typically 15 to 25% longer than the optimal one.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class GreedyEdge implements TspConstructiveHeuristic {
+
+    /**
+     * Default number of candidate neighbours per city.
+     */
+    public static final int DEFAULT_CANDIDATES = 10;
+
+    private final int candidates;
+
+    /**
+     * Creates the heuristic, considering the edges to the
+     * {@link #DEFAULT_CANDIDATES} nearest cities of every city.
+     */
+    public GreedyEdge() {
+        this(DEFAULT_CANDIDATES);
+    }
+
+    /**
+     * Creates the heuristic, considering the edges to the given number of
+     * nearest cities of every city.
+     * @param candidates number of candidate neighbours per city
+     */
+    public GreedyEdge(int candidates) {
+        if (candidates < 1) {
+            throw new IllegalArgumentException("candidates must be positive");
+        }
+        this.candidates = candidates;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param data Data of problem instance
+     * @param startCityIndex Index of starting city, if needed by the implementation
+     *
+     * @return Solution found by the heuristic
+     */
+    @Override
+    public TspTour computeTour(TspData data, int startCityIndex) {
+        // fail-fast if data integrity isn't respected
+        Objects.requireNonNull(data, "data must not be null");
+        int n = data.getNumberOfCities();
+        if (startCityIndex < 0 || startCityIndex >= n) {
+            throw new IllegalArgumentException("start city index out of bounds");
+        }
+
+        TspCandidates lists = data.getCandidates(candidates);
+        int k = lists.getNumberOfCandidates();
+
+        // every candidate edge once, packed with its length in a single long: (length, i * k + rank)
+        long[] edges = new long[n * k];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            Interruption.check();
+            for (int r = 0; r < k; r++) {
+                int j = lists.getCandidate(i, r);
+                if (i < j || !isCandidate(lists, j, i)) {
+                    edges[count++] = (long) data.getDistance(i, j) << 32 | (i * k + r);
+                }
+            }
+        }
+        Arrays.sort(edges, 0, count);
+        Interruption.check();
+
+        // neighbours of every city in the tour, -1 for none yet
+        int[] adjacent = new int[2 * n];
+        Arrays.fill(adjacent, -1);
+        int[] fragments = new int[n];
+        for (int i = 0; i < n; i++) {
+            fragments[i] = i;
+        }
+
+        for (int e = 0; e < count; e++) {
+            int edge = (int) edges[e];
+            int i = edge / k;
+            int j = lists.getCandidate(i, edge % k);
+            if (adjacent[2 * i + 1] < 0 && adjacent[2 * j + 1] < 0 && union(fragments, i, j)) {
+                link(adjacent, i, j);
+            }
+        }
+        Interruption.check();
+
+        joinFragments(data, adjacent);
+
+        // read the cycle from the start city
+        int[] tour = new int[n];
+        long distance = 0;
+        int prev = adjacent[2 * startCityIndex + 1];
+        int city = startCityIndex;
+        for (int i = 0; i < n; i++) {
+            tour[i] = city;
+            if (i > 0) {
+                distance += data.getDistance(tour[i - 1], city);
+            }
+            int next = adjacent[2 * city] != prev ? adjacent[2 * city] : adjacent[2 * city + 1];
+            prev = city;
+            city = next;
+        }
+
+        return new TspTour(data, tour, distance);
+    }
+
+    /**
+     * Joins the paths into a single cycle, going from the end of a path to
+     * the nearest end of another one, then back to the first path.
+     */
+    private static void joinFragments(TspData data, int[] adjacent) {
+        int n = data.getNumberOfCities();
+
+        // only the ends of the paths remain in the index
+        var ends = new TspSpatialIndex(data);
+        int first = -1;
+        for (int i = 0; i < n; i++) {
+            if (adjacent[2 * i + 1] >= 0) {
+                ends.remove(i);
+            } else if (first < 0) {
+                first = i;
+            }
+        }
+
+        int end = otherEnd(adjacent, first);
+        ends.remove(first);
+        ends.remove(end);
+        while (ends.size() > 0) {
+            Interruption.check();
+            int nearest = ends.nearest(end);
+            int nearestEnd = otherEnd(adjacent, nearest);
+            ends.remove(nearest);
+            ends.remove(nearestEnd);
+            link(adjacent, end, nearest);
+            end = nearestEnd;
+        }
+        link(adjacent, end, first);
+    }
+
+    /**
+     * Walks a path from one of its ends to the other one.
+     */
+    private static int otherEnd(int[] adjacent, int end) {
+        int prev = -1;
+        int city = end;
+        while (true) {
+            int a = adjacent[2 * city];
+            int next = a != prev ? a : adjacent[2 * city + 1];
+            if (next < 0) {
+                return city;
+            }
+            prev = city;
+            city = next;
+        }
+    }
+
+    private static void link(int[] adjacent, int i, int j) {
+        adjacent[adjacent[2 * i] < 0 ? 2 * i : 2 * i + 1] = j;
+        adjacent[adjacent[2 * j] < 0 ? 2 * j : 2 * j + 1] = i;
+    }
+
+    private static boolean isCandidate(TspCandidates lists, int city, int candidate) {
+        for (int r = 0; r < lists.getNumberOfCandidates(); r++) {
+            if (lists.getCandidate(city, r) == candidate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the sets of two cities, unless they are already the same.
+     * @return true if the sets were merged
+     */
+    private static boolean union(int[] parents, int i, int j) {
+        int ri = find(parents, i);
+        int rj = find(parents, j);
+        if (ri == rj) {
+            return false;
+        }
+        parents[Math.max(ri, rj)] = Math.min(ri, rj);
+        return true;
+    }
+
+    private static int find(int[] parents, int i) {
+        // path halving
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+}
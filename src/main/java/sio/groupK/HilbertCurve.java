@@ -0,0 +1,108 @@
+package sio.groupK;
+
+import java.util.Arrays;
+import java.util.Objects;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+
+/**
+ * Space-filling curve constructive heuristic for the TSP: cities are visited
+ * in the order of a Hilbert curve covering their bounding square.
+ *
+ * <p>The tour takes O(n log n) to compute, and is typically 30 to 60% longer
+ * than the optimal one.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class HilbertCurve implements TspConstructiveHeuristic {
+
+    /**
+     * Number of bits per coordinate of the curve, which covers a grid of
+     * 2^ORDER x 2^ORDER cells. Cities sharing a cell are visited by index.
+     */
+    private static final int ORDER = 16;
+
+    /**
+     * {@inheritDoc}
+     * @param data Data of problem instance
+     * @param startCityIndex Index of starting city, if needed by the implementation
+     *
+     * @return Solution found by the heuristic
+     */
+    @Override
+    public TspTour computeTour(TspData data, int startCityIndex) {
+        // fail-fast if data integrity isn't respected
+        Objects.requireNonNull(data, "data must not be null");
+        int n = data.getNumberOfCities();
+        if (startCityIndex < 0 || startCityIndex >= n) {
+            throw new IllegalArgumentException("start city index out of bounds");
+        }
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, data.getXCoordinateForCity(i));
+            minY = Math.min(minY, data.getYCoordinateForCity(i));
+            maxX = Math.max(maxX, data.getXCoordinateForCity(i));
+            maxY = Math.max(maxY, data.getYCoordinateForCity(i));
+        }
+        long span = Math.max(1, Math.max((long) maxX - minX, (long) maxY - minY));
+        long cells = (1L << ORDER) - 1;
+
+        // sort the cities by their index on the curve, packed with the city in a single positive long
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int x = (int) (((long) data.getXCoordinateForCity(i) - minX) * cells / span);
+            int y = (int) (((long) data.getYCoordinateForCity(i) - minY) * cells / span);
+            keys[i] = hilbertIndex(x, y) << 31 | i;
+        }
+        Arrays.sort(keys);
+
+        // start from the given city, and follow the curve around
+        int first = 0;
+        while ((keys[first] & Integer.MAX_VALUE) != startCityIndex) {
+            first++;
+        }
+        int[] tour = new int[n];
+        long distance = 0;
+        for (int i = 0; i < n; i++) {
+            tour[i] = (int) (keys[(first + i) % n] & Integer.MAX_VALUE);
+            if (i > 0) {
+                distance += data.getDistance(tour[i - 1], tour[i]);
+            }
+        }
+
+        return new TspTour(data, tour, distance);
+    }
+
+    /**
+     * Computes the position of a cell along the Hilbert curve.
+     * @param x column of the cell, in [0, 2^ORDER)
+     * @param y row of the cell, in [0, 2^ORDER)
+     * @return position of the cell, in [0, 2^(2 ORDER))
+     */
+    static long hilbertIndex(int x, int y) {
+        int side = 1 << ORDER;
+        long d = 0;
+        for (int s = side >>> 1; s > 0; s >>>= 1) {
+            int rx = (x & s) != 0 ? 1 : 0;
+            int ry = (y & s) != 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+
+            // rotate the quadrant so that the curve is read in the right orientation
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
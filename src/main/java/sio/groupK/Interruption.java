@@ -0,0 +1,28 @@
+package sio.groupK;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of the heuristics: their main loops check the
+ * interrupted status of the thread computing the tour, so that interrupting
+ * it, for instance through {@link java.util.concurrent.Future#cancel(boolean)},
+ * aborts the computation.
+ *
+ * @author Loïc Herman
+ */
+final class Interruption {
+
+    private Interruption() {
+    }
+
+    /**
+     * Aborts the computation if the current thread is interrupted. The
+     * interrupted status is kept, so that callers can see it too.
+     * @throws CancellationException if the current thread is interrupted
+     */
+    static void check() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("tour computation interrupted");
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package sio.groupK;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+import sio.tsp.TspTourEditor;
+import sio.tsp.TspTourImprovement;
+
+/**
+ * Iterated local search for the TSP.
+ *
+ * <p>The tour is first improved once with the local search of
+ * {@link TwoOptOrOpt}. Independent chains then start from the result and
+ * repeatedly perturb it with a double-bridge kick and repair it. A kicked tour is kept if it is not longer than before the
+ * kick, and rolled back otherwise. Kicks are local: the three segments they
+ * exchange are short and consecutive, so that a kick costs a few short
+ * reversals, and the repair only examines the six cities around the changed
+ * edges and the ones its moves touch. The tour is held in a
+ * {@link TspTourEditor}, which keeps its length up to date move by move.</p>
+ *
+ * <p>Chains run on their own threads until the time limit. Every share
+ * interval, a chain publishes its tour if it is the best one so far, or
+ * restarts from the published tour if it is shorter. The published lengths
+ * are recorded as a convergence trace.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class IteratedLocalSearch implements TspTourImprovement {
+
+    /**
+     * Default duration of a search.
+     */
+    public static final Duration DEFAULT_TIME_LIMIT = Duration.ofSeconds(5);
+
+    /**
+     * Default interval between two exchanges of the best tour.
+     */
+    public static final Duration DEFAULT_SHARE_INTERVAL = Duration.ofMillis(250);
+
+    /**
+     * Longest segment exchanged by a kick.
+     */
+    private static final int MAX_KICK_SEGMENT_LENGTH = 50;
+
+    private final int chains;
+    private final Duration timeLimit;
+    private final long shareIntervalNanos;
+    private final long seed;
+    private final TwoOptOrOpt localSearch;
+
+    /**
+     * Creates a search running one chain per available processor for
+     * {@link #DEFAULT_TIME_LIMIT}.
+     */
+    public IteratedLocalSearch() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_TIME_LIMIT, DEFAULT_SHARE_INTERVAL, 0);
+    }
+
+    /**
+     * @param chains number of chains, each running on its own thread
+     * @param timeLimit duration of a search
+     * @param shareInterval interval between two exchanges of the best tour
+     * @param seed seed of the kicks, each chain deriving its own
+     */
+    public IteratedLocalSearch(int chains, Duration timeLimit, Duration shareInterval, long seed) {
+        if (chains < 1) {
+            throw new IllegalArgumentException("chains must be positive");
+        }
+        Objects.requireNonNull(timeLimit, "timeLimit must not be null");
+        Objects.requireNonNull(shareInterval, "shareInterval must not be null");
+        if (timeLimit.isNegative() || shareInterval.isNegative()) {
+            throw new IllegalArgumentException("durations must not be negative");
+        }
+        this.chains = chains;
+        this.timeLimit = timeLimit;
+        this.shareIntervalNanos = shareInterval.toNanos();
+        this.seed = seed;
+        // the repair of a kick stops with the search
+        this.localSearch = new TwoOptOrOpt(TwoOptOrOpt.DEFAULT_CANDIDATES, timeLimit, Long.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param tour Tour to improve
+     *
+     * @return Best tour found by the search
+     */
+    @Override
+    public TspTour improve(TspTour tour) {
+        Objects.requireNonNull(tour, "tour must not be null");
+        return search(tour).best();
+    }
+
+    /**
+     * Searches from a tour built by a constructive heuristic.
+     * @param data Data of problem instance
+     * @param heuristic heuristic building the initial tour
+     * @param startCityIndex Index of starting city of the initial tour
+     * @return best tour found, and the convergence trace
+     */
+    public Result search(TspData data, TspConstructiveHeuristic heuristic, int startCityIndex) {
+        Objects.requireNonNull(heuristic, "heuristic must not be null");
+        return search(heuristic.computeTour(data, startCityIndex));
+    }
+
+    /**
+     * Searches from the given tour, until the time limit.
+     * @param initial initial tour of every chain
+     * @return best tour found, starting from the same city as the initial
+     * one, and the convergence trace
+     * @throws CancellationException if the calling thread is interrupted
+     */
+    public Result search(TspTour initial) {
+        Objects.requireNonNull(initial, "initial must not be null");
+        long start = System.nanoTime();
+        var shared = new Shared(initial, start);
+        if (initial.size() < 8) {
+            // no double bridge fits in the tour
+            return shared.result(System.nanoTime() - start);
+        }
+
+        // the descent is deterministic, so it is run once for every chain
+        var descent = localSearch.newSearch(TspTourEditor.of(initial));
+        for (int city = 0; city < initial.size(); city++) {
+            descent.push(city);
+        }
+        descent.run(start);
+        var tour = descent.tour();
+        shared.offer(new Best(tour.toTour(shared.startCity), tour.cycleLength()));
+
+        var random = new SplittableRandom(seed);
+        var pool = new ForkJoinPool(chains);
+        var futures = new ArrayList<Future<?>>(chains);
+        try {
+            for (int c = 0; c < chains; c++) {
+                var chain = new Chain(shared, random.split(), start);
+                futures.add(pool.submit(chain::run));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("search interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("search failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return shared.result(System.nanoTime() - start);
+    }
+
+    /**
+     * One chain of kicks and repairs, on its own copy of the tour.
+     */
+    private final class Chain {
+        private final Shared shared;
+        private final SplittableRandom random;
+        private final long start;
+        private final long deadline;
+        private TwoOptOrOpt.Search search;
+        private long unsharedKicks;
+
+        Chain(Shared shared, SplittableRandom random, long start) {
+            this.shared = shared;
+            this.random = random;
+            this.start = start;
+            this.deadline = start + timeLimit.toNanos();
+        }
+
+        void run() {
+            restart(shared.best.get());
+
+            long accepted = 0;
+            long nextShare = System.nanoTime() + shareIntervalNanos;
+            for (long now; (now = System.nanoTime()) < deadline; ) {
+                if (now >= nextShare) {
+                    share();
+                    nextShare = now + shareIntervalNanos;
+                }
+                Interruption.check();
+
+                // the editor keeps the length up to date through the kick,
+                // the repair and the rollback
+                long length = search.tour().cycleLength();
+                search.mark();
+                kick();
+                search.run(start);
+                unsharedKicks++;
+                if (search.tour().cycleLength() <= length) {
+                    accepted++;
+                } else {
+                    search.rollback();
+                }
+            }
+            shared.acceptedKicks.add(accepted);
+            share();
+        }
+
+        /**
+         * Applies a double bridge on three consecutive segments from a random
+         * city, a B C D becoming a C B D, and queues the cities around the
+         * changed edges.
+         */
+        private void kick() {
+            TspTourEditor tour = search.tour();
+            int maxSegment = Math.min(MAX_KICK_SEGMENT_LENGTH, (tour.size() - 2) / 2);
+
+            int a = random.nextInt(tour.size());
+            int b0 = tour.next(a);
+            int b1 = advance(tour, b0, random.nextInt(maxSegment));
+            int c0 = tour.next(b1);
+            int c1 = advance(tour, c0, random.nextInt(maxSegment));
+            int d0 = tour.next(c1);
+
+            tour.moveSegment(b0, b1, c1, false);
+
+            for (int city : new int[] {a, b0, b1, c0, c1, d0}) {
+                search.push(city);
+            }
+        }
+
+        /**
+         * Publishes the tour of this chain if it is the best one, or restarts
+         * from the best one if it is shorter.
+         */
+        private void share() {
+            shared.kicks.add(unsharedKicks);
+            unsharedKicks = 0;
+
+            var best = shared.best.get();
+            long length = search.tour().cycleLength();
+            if (length < best.cycleLength()) {
+                TspTour tour = search.tour().toTour(shared.startCity);
+                shared.offer(new Best(tour, length));
+            } else if (best.cycleLength() < length) {
+                restart(best);
+            }
+        }
+
+        private void restart(Best best) {
+            search = localSearch.newSearch(TspTourEditor.of(best.tour()));
+        }
+
+        private static int advance(TspTourEditor tour, int city, int steps) {
+            for (int i = 0; i < steps; i++) {
+                city = tour.next(city);
+            }
+            return city;
+        }
+    }
+
+    /**
+     * State shared by the chains of a search.
+     */
+    private static final class Shared {
+        private final int startCity;
+        private final long start;
+        private final AtomicReference<Best> best;
+        private final List<TracePoint> trace = new ArrayList<>();
+        private final LongAdder kicks = new LongAdder();
+        private final LongAdder acceptedKicks = new LongAdder();
+
+        Shared(TspTour initial, long start) {
+            this.startCity = initial.cityAt(0);
+            this.start = start;
+            this.best = new AtomicReference<>(new Best(initial, cycleLength(initial)));
+            trace.add(new TracePoint(0, 0, best.get().cycleLength()));
+        }
+
+        /**
+         * Keeps the tour if it is shorter than the best one, and traces it.
+         */
+        void offer(Best candidate) {
+            var current = best.accumulateAndGet(
+                    candidate,
+                    (a, b) -> b.cycleLength() < a.cycleLength() ? b : a
+            );
+            if (current == candidate) {
+                synchronized (trace) {
+                    trace.add(new TracePoint(
+                            System.nanoTime() - start,
+                            kicks.sum(),
+                            candidate.cycleLength()
+                    ));
+                }
+            }
+        }
+
+        Result result(long wallNanos) {
+            List<TracePoint> points;
+            synchronized (trace) {
+                points = new ArrayList<>(trace);
+            }
+            // chains publish concurrently, so points are not added in order
+            points.sort(Comparator.comparingLong(TracePoint::nanos));
+            return new Result(best.get().tour(), List.copyOf(points), kicks.sum(), acceptedKicks.sum(), wallNanos);
+        }
+
+        private static long cycleLength(TspTour tour) {
+            int n = tour.size();
+            return n < 2 ? tour.length() : tour.length() + tour.data().getDistance(tour.cityAt(n - 1), tour.cityAt(0));
+        }
+    }
+
+    /**
+     * Best tour published by the chains.
+     * @param tour published tour
+     * @param cycleLength length of the tour, closing edge included
+     */
+    private record Best(TspTour tour, long cycleLength) {
+    }
+
+    /**
+     * Length of the best tour at some point of a search.
+     * @param nanos time elapsed since the start of the search, in nanoseconds
+     * @param kicks kicks reported by the chains at that time, approximately
+     * @param length length of the best tour, closing edge included, so that
+     * it compares with the optimal length of the instance
+     */
+    public record TracePoint(long nanos, long kicks, long length) {
+    }
+
+    /**
+     * Outcome of a search.
+     * @param best best tour found
+     * @param trace lengths of the best tour over time, the first one being
+     * the initial tour
+     * @param kicks number of kicks applied by every chain
+     * @param acceptedKicks number of kicks kept
+     * @param wallNanos elapsed time of the search
+     */
+    public record Result(TspTour best, List<TracePoint> trace, long kicks, long acceptedKicks, long wallNanos) {
+    }
+}
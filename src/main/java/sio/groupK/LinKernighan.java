@@ -0,0 +1,286 @@
+package sio.groupK;
+
+import java.time.Duration;
+import java.util.Objects;
+import sio.tsp.TspCandidates;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+import sio.tsp.TspTourEditor;
+import sio.tsp.TspTourImprovement;
+
+/**
+ * Lin-Kernighan style local search for the TSP.
+ *
+ * <p>From a city t1 and one of its tour neighbours t2, a chain of 2-opt
+ * moves is built: each one removes the edge (t1, t2) and an edge (t3, t4),
+ * t3 being a candidate neighbour of t2, then continues from t2 = t4 as long
+ * as the cumulated gain stays positive. The chain is rolled back to its best
+ * closed tour, and kept if that tour is shorter. Edges added by a chain are
+ * never removed by it, and its depth is bounded.</p>
+ *
+ * <p>The search works on a {@link TspTourEditor}, which keeps the length of
+ * the tour up to date, and only exports the final tour. It uses don't-look
+ * bits like {@link TwoOptOrOpt}.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class LinKernighan implements TspTourImprovement {
+
+    /**
+     * Default number of candidate neighbours examined for each city.
+     */
+    public static final int DEFAULT_CANDIDATES = 8;
+
+    /**
+     * Default maximal number of moves of a chain.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 30;
+
+    /**
+     * Number of examined cities between two checks of the time budget.
+     */
+    private static final int TIME_CHECK_INTERVAL = 64;
+
+    private final int candidates;
+    private final int maxDepth;
+    private final long timeLimitNanos;
+
+    /**
+     * Creates a local search with {@link #DEFAULT_CANDIDATES} candidates per
+     * city and chains of at most {@link #DEFAULT_MAX_DEPTH} moves, running
+     * until no improving chain is left.
+     */
+    public LinKernighan() {
+        this(DEFAULT_CANDIDATES, DEFAULT_MAX_DEPTH, null);
+    }
+
+    /**
+     * Creates a local search stopping when no improving chain is left, or
+     * when the time budget is exhausted.
+     * @param candidates number of candidate neighbours examined for each city
+     * @param maxDepth maximal number of moves of a chain
+     * @param timeLimit maximal duration of an improvement, null for no limit
+     */
+    public LinKernighan(int candidates, int maxDepth, Duration timeLimit) {
+        if (candidates < 1) {
+            throw new IllegalArgumentException("candidates must be positive");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be positive");
+        }
+        this.candidates = candidates;
+        this.maxDepth = maxDepth;
+        this.timeLimitNanos = timeLimit == null ? Long.MAX_VALUE : timeLimit.toNanos();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param tour Tour to improve
+     *
+     * @return Improved tour
+     */
+    @Override
+    public TspTour improve(TspTour tour) {
+        Objects.requireNonNull(tour, "tour must not be null");
+        long start = System.nanoTime();
+        TspData data = tour.data();
+        int n = data.getNumberOfCities();
+        if (n < 5) {
+            return tour;
+        }
+
+        int[] order = tour.tour();
+        var search = new Search(TspTourEditor.of(data, order), data.getCandidates(candidates));
+        for (int city : order) {
+            search.push(city);
+        }
+        search.run(start);
+        return search.tour.toTour(order[0]);
+    }
+
+    /**
+     * State of the search on one tour.
+     */
+    private final class Search {
+        private final TspTourEditor tour;
+        private final TspData data;
+        private final TspCandidates candidates;
+        private final int k;
+
+        // cities whose don't-look bit is off, in a circular queue
+        private final int[] queue;
+        private final boolean[] queued;
+        private int head;
+        private int queueSize;
+
+        // moves of the current chain, and the edges it added
+        private final int[] t2s;
+        private final int[] t3s;
+        private final int[] t4s;
+
+        Search(TspTourEditor tour, TspCandidates candidates) {
+            this.tour = tour;
+            this.data = tour.getData();
+            this.candidates = candidates;
+            this.k = candidates.getNumberOfCandidates();
+            this.queue = new int[tour.size()];
+            this.queued = new boolean[tour.size()];
+            this.t2s = new int[maxDepth];
+            this.t3s = new int[maxDepth];
+            this.t4s = new int[maxDepth];
+        }
+
+        void run(long start) {
+            long examined = 0;
+            while (queueSize > 0) {
+                if (++examined % TIME_CHECK_INTERVAL == 0) {
+                    Interruption.check();
+                    if (System.nanoTime() - start >= timeLimitNanos) {
+                        return;
+                    }
+                }
+
+                int t1 = poll();
+                if (improve(t1, tour.next(t1)) || improve(t1, tour.prev(t1))) {
+                    push(t1);
+                }
+            }
+        }
+
+        /**
+         * Tries the chains removing edge (t1, t2) first, one for each first
+         * candidate t3, and keeps the first improving one.
+         */
+        private boolean improve(int t1, int t2) {
+            int d12 = data.getDistance(t1, t2);
+            for (int r = 0; r < k; r++) {
+                int t3 = candidates.getCandidate(t2, r);
+                int d23 = data.getDistance(t2, t3);
+                if (d23 >= d12) {
+                    break;
+                }
+                if (t3 == t1) {
+                    continue;
+                }
+                int t4 = tour.next(t1) == t2 ? tour.prev(t3) : tour.next(t3);
+                if (t4 == t2) {
+                    continue;
+                }
+
+                if (chain(t1, t2, t3, t4, d12 - d23)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Applies the first move of a chain and extends it greedily, then
+         * rolls it back to its best closed tour.
+         * @return true if the chain shortened the tour
+         */
+        private boolean chain(int t1, int t2, int t3, int t4, long gain) {
+            long bestGain = 0;
+            int bestDepth = 0;
+            int depth = 0;
+
+            while (true) {
+                tour.twoOptMove(t1, t2, t4, t3);
+                t2s[depth] = t2;
+                t3s[depth] = t3;
+                t4s[depth] = t4;
+                depth++;
+
+                gain += data.getDistance(t3, t4);
+                long closedGain = gain - data.getDistance(t4, t1);
+                if (closedGain > bestGain) {
+                    bestGain = closedGain;
+                    bestDepth = depth;
+                }
+                if (depth == maxDepth) {
+                    break;
+                }
+
+                // pick the next move maximising the gain of its exchange
+                t2 = t4;
+                boolean forward = tour.next(t1) == t2;
+                t3 = -1;
+                long best = Long.MIN_VALUE;
+                for (int r = 0; r < k; r++) {
+                    int c = candidates.getCandidate(t2, r);
+                    int d23 = data.getDistance(t2, c);
+                    if (gain - d23 <= 0) {
+                        break;
+                    }
+                    if (c == t1) {
+                        continue;
+                    }
+                    int d = forward ? tour.prev(c) : tour.next(c);
+                    if (d == t2 || added(c, d, depth)) {
+                        continue;
+                    }
+                    long value = (long) data.getDistance(c, d) - d23;
+                    if (value > best) {
+                        best = value;
+                        t3 = c;
+                        t4 = d;
+                    }
+                }
+                if (t3 < 0) {
+                    break;
+                }
+                gain -= data.getDistance(t2, t3);
+            }
+
+            // undo the moves past the best closed tour, last first
+            while (depth > bestDepth) {
+                depth--;
+                tour.twoOptMove(t1, t4s[depth], t2s[depth], t3s[depth]);
+            }
+            if (bestGain <= 0) {
+                return false;
+            }
+
+            for (int i = 0; i < bestDepth; i++) {
+                push(t2s[i]);
+                push(t3s[i]);
+                push(t4s[i]);
+            }
+            return true;
+        }
+
+        /**
+         * Tells whether the edge (a, b) was added by one of the first moves
+         * of the current chain.
+         */
+        private boolean added(int a, int b, int depth) {
+            for (int i = 0; i < depth; i++) {
+                int c = t2s[i];
+                int d = t3s[i];
+                if ((a == c && b == d) || (a == d && b == c)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void push(int city) {
+            if (!queued[city]) {
+                queued[city] = true;
+                int tail = head + queueSize;
+                queue[tail >= queue.length ? tail - queue.length : tail] = city;
+                queueSize++;
+            }
+        }
+
+        private int poll() {
+            int city = queue[head];
+            queued[city] = false;
+            if (++head == queue.length) {
+                head = 0;
+            }
+            queueSize--;
+            return city;
+        }
+    }
+}
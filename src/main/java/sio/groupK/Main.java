@@ -1,7 +1,12 @@
 package sio.groupK;
 
+import java.time.Duration;
+import java.util.Random;
+import java.util.stream.IntStream;
 import sio.tsp.TspConstructiveHeuristic;
 import sio.tsp.TspData;
+import sio.tsp.TspInstrumentation;
+import sio.tsp.TspTour;
 
 public final class Main {
 
@@ -18,62 +23,244 @@ public final class Main {
     };
 
     /**
-     * List of heuristics to test.
+     * List of heuristics to test, alone and followed by a local search.
      */
-    private static final TspConstructiveHeuristic[] heuristics = {
-        new NearestNeighbor(),
-        new DoubleEndsNearestNeighbor()
+    private static final HeuristicPair[] heuristics = {
+        new HeuristicPair("NearestNeighbor", new NearestNeighbor()),
+        new HeuristicPair("DoubleEndsNearestNeighbor", new DoubleEndsNearestNeighbor()),
+        new HeuristicPair("HilbertCurve", new HilbertCurve()),
+        new HeuristicPair("GreedyEdge", new GreedyEdge()),
+        new HeuristicPair("NearestInsertion", new NearestInsertion()),
+        new HeuristicPair("FarthestInsertion", new FarthestInsertion()),
+        new HeuristicPair("CheapestInsertion", new CheapestInsertion()),
+        new HeuristicPair("NearestNeighbor + TwoOptOrOpt", new NearestNeighbor().andThen(new TwoOptOrOpt())),
+        new HeuristicPair(
+                "DoubleEndsNearestNeighbor + TwoOptOrOpt",
+                new DoubleEndsNearestNeighbor().andThen(new TwoOptOrOpt())
+        ),
     };
 
+    /**
+     * Heuristics able to abandon tours which can't beat the best one, compared
+     * with their full evaluation when only the best tour is searched.
+     */
+    private static final HeuristicPair[] boundedHeuristics = {
+        new HeuristicPair("NearestNeighbor", new NearestNeighbor()),
+        new HeuristicPair("DoubleEndsNearestNeighbor", new DoubleEndsNearestNeighbor()),
+    };
+
+    /**
+     * Prints statistics on the tours of every heuristic from every start city.
+     * With {@code --best}, searches the best tour only and prints the time
+     * saved by abandoning tours early. With {@code --ils <seconds>}, runs an
+     * iterated local search on every dataset and prints its convergence. With
+     * {@code --partition <cities>}, solves a random instance of the given size
+     * by partitioning, on a growing number of threads.
+     */
     public static void main(String[] args) throws Exception {
-        // We want to compute stats for every dataset and every heuristic.
+        if (args.length == 1 && args[0].equals("--best")) {
+            searchBest();
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--ils")) {
+            searchIterated(Duration.ofMillis(Math.round(Double.parseDouble(args[1]) * 1000)));
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--partition")) {
+            solvePartitioned(Integer.parseInt(args[1]));
+            return;
+        }
+
+        // Start cities are spread over every available core.
+        try (var evaluator = new MultiStartEvaluator()) {
+            // We want to compute stats for every dataset and every heuristic.
+            for (var dataset : datasets) {
+                System.out.printf(
+                        "%n%nDataset: %s (optimal length %d)%n",
+                        dataset.filename,
+                        dataset.optimalLength
+                );
+                // Load the data for the current dataset
+                TspInstrumentation.reset();
+                TspData data = TspData.fromFile(dataset.filename);
+
+                // Iterate over the available heuristics and compute a tour starting from every city.
+                for (var heuristic : heuristics) {
+                    var summary = evaluator.evaluate(data, heuristic.heuristic);
+                    long min = summary.minLength();
+                    long avg = summary.averageLength();
+                    long max = summary.maxLength();
+
+                    // Log our results
+                    System.out.println("-".repeat(80));
+                    System.out.printf(
+                            "Heuristic: %s (average tour compute time %.2f ms, all starts in %.2f s)%n",
+                            heuristic.name,
+                            summary.averageNanos() / 1_000_000.0,
+                            summary.wallNanos() / 1_000_000_000.0
+                    );
+                    System.out.printf("Min: %d (%.2f%% to optimal)%n", min, 100.0 * dataset.optimalLength / min);
+                    System.out.printf("Avg: %d (%.2f%% to optimal)%n", avg, 100.0 * dataset.optimalLength / avg);
+                    System.out.printf("Max: %d (%.2f%% to optimal)%n", max, 100.0 * dataset.optimalLength / max);
+                    System.out.printf("Best tour starts from city %d%n", summary.best().startCity());
+                }
+
+                // Breakdown of the time spent on the dataset, when run with -Dsio.tsp.instrumentation=true
+                if (TspInstrumentation.isEnabled()) {
+                    printPhases();
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches the best tour of the bounded heuristics on every dataset, and
+     * compares it with the evaluation of every start city.
+     */
+    private static void searchBest() throws Exception {
+        try (var evaluator = new MultiStartEvaluator()) {
+            for (var dataset : datasets) {
+                System.out.printf("%n%nDataset: %s%n", dataset.filename);
+                TspData data = TspData.fromFile(dataset.filename);
+                int[] startCities = IntStream.range(0, data.getNumberOfCities()).toArray();
+
+                for (var heuristic : boundedHeuristics) {
+                    var full = evaluator.evaluate(data, heuristic.heuristic);
+                    var search = evaluator.findBest(data, heuristic.heuristic, startCities);
+
+                    System.out.println("-".repeat(80));
+                    System.out.printf(
+                            "Heuristic: %s, best tour %d from city %d%n",
+                            heuristic.name,
+                            search.best().tour().length(),
+                            search.best().startCity()
+                    );
+                    System.out.printf(
+                            "Pruned %d of %d starts, %.2f s instead of %.2f s (%.1f%% saved)%n",
+                            search.pruned(),
+                            search.count(),
+                            search.wallNanos() / 1_000_000_000.0,
+                            full.wallNanos() / 1_000_000_000.0,
+                            100.0 * (full.wallNanos() - search.wallNanos()) / full.wallNanos()
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an iterated local search from a nearest neighbour tour on every
+     * dataset, and prints the best length over time.
+     */
+    private static void searchIterated(Duration timeLimit) throws Exception {
+        var search = new IteratedLocalSearch(
+                Runtime.getRuntime().availableProcessors(),
+                timeLimit,
+                IteratedLocalSearch.DEFAULT_SHARE_INTERVAL,
+                0
+        );
         for (var dataset : datasets) {
+            TspData data = TspData.fromFile(dataset.filename);
+            var result = search.search(data, new NearestNeighbor(), 0);
+
             System.out.printf(
-                    "%n%nDataset: %s (optimal length %d)%n",
+                    "%n%nDataset: %s (optimal length %d), %d kicks, %d kept%n",
                     dataset.filename,
-                    dataset.optimalLength
+                    dataset.optimalLength,
+                    result.kicks(),
+                    result.acceptedKicks()
             );
-            // Load the data for the current dataset
-            TspData data = TspData.fromFile(dataset.filename);
+            System.out.println("-".repeat(80));
+            // traced lengths include the closing edge, like the optimal ones
+            for (var point : result.trace()) {
+                System.out.printf(
+                        "%8.2f s %12d kicks %10d (%.2f%% above optimal)%n",
+                        point.nanos() / 1_000_000_000.0,
+                        point.kicks(),
+                        point.length(),
+                        100.0 * (point.length() - dataset.optimalLength) / dataset.optimalLength
+                );
+            }
+        }
+    }
 
-            // Iterate over the available heuristics and compute a tour starting from every city.
-            for (var heuristic : heuristics) {
-                long min = Long.MAX_VALUE;
-                long max = 0;
-                long avg = 0;
-                long avgTime = 0;
-
-                for (int i = 0; i < data.getNumberOfCities(); i++) {
-                    var start = System.nanoTime();
-                    var tour = heuristic.computeTour(data, i);
-                    var end = System.nanoTime();
-
-                    // Update our running average and min/max values if needed.
-                    var length = tour.length();
-                    min = Math.min(min, length);
-                    max = Math.max(max, length);
-                    avg += length;
-                    avgTime += end - start;
-                }
+    /**
+     * Solves cities drawn uniformly in a square with the partitioning solver,
+     * from one thread to every available processor, and prints the speedup.
+     * The optimal length of such an instance is close to 0.7124 sqrt(n A)
+     * for large n, which the lengths are compared with.
+     */
+    private static void solvePartitioned(int numberOfCities) {
+        int side = 1_000_000;
+        var random = new Random(42);
+        int[] xs = new int[numberOfCities];
+        int[] ys = new int[numberOfCities];
+        for (int i = 0; i < numberOfCities; i++) {
+            xs[i] = random.nextInt(side);
+            ys[i] = random.nextInt(side);
+        }
+        TspData data = TspData.fromCoordinates(xs, ys);
+        double estimate = 0.7124 * Math.sqrt((double) numberOfCities * side * side);
+        TspConstructiveHeuristic heuristic = new NearestNeighbor().andThen(new TwoOptOrOpt());
 
-                // compute the average time of computation and average tour length
-                avg /= data.getNumberOfCities();
-                avgTime /= data.getNumberOfCities();
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d random cities, %d processors%n", numberOfCities, processors);
+        System.out.println("-".repeat(80));
 
-                // Log our results
-                System.out.println("-".repeat(80));
-                System.out.printf(
-                        "Heuristic: %s (average tour compute time %.2f ms)%n",
-                        heuristic.getClass().getSimpleName(),
-                        avgTime / 1_000_000.0
-                );
-                System.out.printf("Min: %d (%.2f%% to optimal)%n", min, 100.0 * dataset.optimalLength / min);
-                System.out.printf("Avg: %d (%.2f%% to optimal)%n", avg, 100.0 * dataset.optimalLength / avg);
-                System.out.printf("Max: %d (%.2f%% to optimal)%n", max, 100.0 * dataset.optimalLength / max);
+        // the first run warms the JIT compiler up, and is not reported
+        new PartitionSolver(heuristic, PartitionSolver.DEFAULT_CELL_SIZE, processors, true).solve(data, 0);
+        long sequentialNanos = 0;
+        for (int threads = 1; ; threads = Math.min(2 * threads, processors)) {
+            var solver = new PartitionSolver(heuristic, PartitionSolver.DEFAULT_CELL_SIZE, threads, true);
+            var solution = solver.solve(data, 0);
+            if (threads == 1) {
+                sequentialNanos = solution.wallNanos();
+            }
+
+            TspTour tour = solution.tour();
+            long length = tour.length() + data.getDistance(tour.cityAt(tour.size() - 1), tour.cityAt(0));
+            System.out.printf(
+                    "%3d threads: %9.1f ms (speedup %.2f), cells %.1f ms, repairs %.1f ms, "
+                            + "length %d (%.2f%% above estimate)%n",
+                    threads,
+                    solution.wallNanos() / 1_000_000.0,
+                    (double) sequentialNanos / solution.wallNanos(),
+                    solution.cellNanos() / 1_000_000.0,
+                    solution.repairNanos() / 1_000_000.0,
+                    length,
+                    100.0 * (length - estimate) / estimate
+            );
+            if (threads == processors) {
+                break;
             }
         }
     }
 
+    /**
+     * Prints the time spent in each phase since the last reset of the
+     * instrumentation, and the distances read and computed.
+     */
+    private static void printPhases() {
+        System.out.println("-".repeat(80));
+        System.out.println("Phases (wall time summed over tasks):");
+        for (var phase : TspInstrumentation.Phase.values()) {
+            System.out.printf(
+                    "  %-12s %9d runs %12.2f ms%n",
+                    phase.name().toLowerCase(),
+                    phase.count(),
+                    phase.nanos() / 1_000_000.0
+            );
+        }
+        long lookups = TspInstrumentation.distanceLookups();
+        long computations = TspInstrumentation.distanceComputations();
+        System.out.printf(
+                "Distances: %d lookups, %d computed on access (%.2f%%)%n",
+                lookups,
+                computations,
+                lookups == 0 ? 0.0 : 100.0 * computations / lookups
+        );
+    }
+
     /**
      * Represents a dataset and its optimal length.
      * @param filename Filename of the dataset
@@ -83,4 +270,14 @@ public final class Main {
             String filename,
             long optimalLength
     ) {}
+
+    /**
+     * Represents a heuristic and its displayed name.
+     * @param name Name of the heuristic
+     * @param heuristic Heuristic computing the tours
+     */
+    private record HeuristicPair(
+            String name,
+            TspConstructiveHeuristic heuristic
+    ) {}
 }
@@ -0,0 +1,382 @@
+package sio.groupK;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspInstrumentation;
+import sio.tsp.TspTour;
+import sio.tsp.TspWorkspace;
+
+/**
+ * Runs a constructive heuristic from many start cities in parallel, and
+ * gathers statistics on the resulting tours as they complete.
+ *
+ * <p>Every worker computes its tours in its own {@link TspWorkspace}, and
+ * only copies a tour when it is the shortest the worker found so far, or
+ * when a listener has to receive it.</p>
+ *
+ * <p>When only the shortest tour is needed, {@link #findBest} shares the
+ * length of the best tour found so far between the workers, so that tours
+ * which can't beat it are abandoned early, see
+ * {@link TspWorkspace#computeTour(int, java.util.function.LongSupplier)}.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class MultiStartEvaluator implements AutoCloseable {
+
+    /**
+     * Number of start cities a worker claims at once.
+     */
+    private static final int CHUNK_SIZE = 8;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final boolean ownsExecutor;
+
+    /**
+     * Creates an evaluator using one worker per available processor.
+     */
+    public MultiStartEvaluator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an evaluator backed by its own fork-join pool.
+     * @param parallelism number of workers
+     */
+    public MultiStartEvaluator(int parallelism) {
+        this(new ForkJoinPool(parallelism), parallelism, true);
+    }
+
+    /**
+     * Creates an evaluator backed by the given executor, which is not shut
+     * down when the evaluator is closed.
+     * @param executor executor running the workers
+     * @param parallelism number of workers submitted for each evaluation
+     */
+    public MultiStartEvaluator(ExecutorService executor, int parallelism) {
+        this(executor, parallelism, false);
+    }
+
+    private MultiStartEvaluator(ExecutorService executor, int parallelism, boolean ownsExecutor) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.parallelism = parallelism;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Computes a tour from every city of the instance.
+     * @param data Data of problem instance
+     * @param heuristic heuristic to evaluate
+     * @return statistics over every tour
+     */
+    public Summary evaluate(TspData data, TspConstructiveHeuristic heuristic) {
+        return evaluate(data, heuristic, allCities(data), null);
+    }
+
+    /**
+     * Computes a tour from each of the given start cities.
+     * @param data Data of problem instance
+     * @param heuristic heuristic to evaluate
+     * @param startCities start cities to evaluate
+     * @param listener notified from the worker threads after each tour, may be null
+     * @return statistics over every tour
+     * @throws IllegalArgumentException if no start city is given
+     */
+    public Summary evaluate(
+            TspData data,
+            TspConstructiveHeuristic heuristic,
+            int[] startCities,
+            Listener listener
+    ) {
+        Objects.requireNonNull(data, "data must not be null");
+        Objects.requireNonNull(heuristic, "heuristic must not be null");
+        if (startCities.length == 0) {
+            throw new IllegalArgumentException("at least one start city is required");
+        }
+
+        var statistics = new Statistics();
+        var cursor = new AtomicInteger();
+        long start = System.nanoTime();
+
+        runWorkers(startCities.length, () -> {
+            var workspace = heuristic.newWorkspace(data);
+            long bestLength = Long.MAX_VALUE;
+            int bestStart = Integer.MAX_VALUE;
+
+            for (int from; (from = cursor.getAndAdd(CHUNK_SIZE)) < startCities.length; ) {
+                int to = Math.min(from + CHUNK_SIZE, startCities.length);
+                for (int i = from; i < to; i++) {
+                    int startCity = startCities[i];
+                    long tourStart = System.nanoTime();
+                    long length = TspInstrumentation.computeTour(heuristic, workspace, startCity);
+                    long nanos = System.nanoTime() - tourStart;
+                    statistics.add(length, nanos);
+
+                    // tours are only copied out of the workspace when needed
+                    boolean better = length < bestLength || (length == bestLength && startCity < bestStart);
+                    Result result = null;
+                    if (better || listener != null) {
+                        result = new Result(startCity, workspace.toTour(), nanos);
+                    }
+                    if (better) {
+                        bestLength = length;
+                        bestStart = startCity;
+                        statistics.offer(result);
+                    }
+                    if (listener != null) {
+                        listener.onResult(result, statistics.snapshot(0));
+                    }
+                }
+            }
+        });
+
+        return statistics.snapshot(System.nanoTime() - start);
+    }
+
+    /**
+     * Searches the shortest tour over the given start cities.
+     *
+     * <p>Unlike {@link #evaluate}, tours longer than the best one found so
+     * far by any worker may be abandoned before they are complete, so that
+     * no statistics are gathered on them. The best tour is the same as the
+     * one of {@link #evaluate}, ties included.</p>
+     * @param data Data of problem instance
+     * @param heuristic heuristic to evaluate
+     * @param startCities start cities to evaluate
+     * @return shortest tour, with the number of abandoned ones
+     * @throws IllegalArgumentException if no start city is given
+     */
+    public Search findBest(TspData data, TspConstructiveHeuristic heuristic, int[] startCities) {
+        Objects.requireNonNull(data, "data must not be null");
+        Objects.requireNonNull(heuristic, "heuristic must not be null");
+        if (startCities.length == 0) {
+            throw new IllegalArgumentException("at least one start city is required");
+        }
+
+        var bound = new AtomicLong(Long.MAX_VALUE);
+        var best = new AtomicReference<Result>();
+        var pruned = new LongAdder();
+        var totalNanos = new LongAdder();
+        var cursor = new AtomicInteger();
+        long start = System.nanoTime();
+
+        runWorkers(startCities.length, () -> {
+            var workspace = heuristic.newWorkspace(data);
+            long bestLength = Long.MAX_VALUE;
+            int bestStart = Integer.MAX_VALUE;
+
+            for (int from; (from = cursor.getAndAdd(CHUNK_SIZE)) < startCities.length; ) {
+                int to = Math.min(from + CHUNK_SIZE, startCities.length);
+                for (int i = from; i < to; i++) {
+                    int startCity = startCities[i];
+                    long tourStart = System.nanoTime();
+                    long length = TspInstrumentation.computeTour(heuristic, workspace, startCity, bound::get);
+                    long nanos = System.nanoTime() - tourStart;
+                    totalNanos.add(nanos);
+                    if (length == TspWorkspace.ABANDONED) {
+                        pruned.increment();
+                        continue;
+                    }
+
+                    // tours as long as the best one are completed, so that
+                    // ties are broken on the start city as by evaluate
+                    bound.accumulateAndGet(length, Math::min);
+                    if (length < bestLength || (length == bestLength && startCity < bestStart)) {
+                        bestLength = length;
+                        bestStart = startCity;
+                        best.accumulateAndGet(
+                                new Result(startCity, workspace.toTour(), nanos),
+                                Statistics::better
+                        );
+                    }
+                }
+            }
+        });
+
+        return new Search(
+                startCities.length,
+                pruned.intValue(),
+                totalNanos.sum(),
+                System.nanoTime() - start,
+                best.get()
+        );
+    }
+
+    /**
+     * Runs the worker on as many threads as the parallelism allows, without
+     * exceeding the number of start cities, and waits for all of them.
+     */
+    private void runWorkers(int startCount, Runnable worker) {
+        // every worker claims chunks of start cities until none are left,
+        // which balances the load when some tours take longer than others
+        var futures = new ArrayList<Future<?>>(parallelism);
+        for (int w = 0; w < Math.min(parallelism, startCount); w++) {
+            futures.add(executor.submit(worker));
+        }
+
+        try {
+            for (var future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("evaluation interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("evaluation failed", e.getCause());
+        }
+    }
+
+    private static int[] allCities(TspData data) {
+        var cities = new int[data.getNumberOfCities()];
+        for (int i = 0; i < cities.length; i++) {
+            cities[i] = i;
+        }
+        return cities;
+    }
+
+    /**
+     * Shuts down the executor if it was created by this evaluator.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Callback receiving tours as they complete. It is called concurrently
+     * from the worker threads.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * @param result the tour that just completed
+         * @param progress statistics over every tour completed so far
+         */
+        void onResult(Result result, Summary progress);
+    }
+
+    /**
+     * Tour computed from one start city.
+     * @param startCity start city given to the heuristic
+     * @param tour tour computed by the heuristic
+     * @param nanos time spent computing the tour, in nanoseconds
+     */
+    public record Result(int startCity, TspTour tour, long nanos) {
+    }
+
+    /**
+     * Statistics over a set of tours.
+     * @param count number of tours
+     * @param minLength length of the shortest tour
+     * @param maxLength length of the longest tour
+     * @param totalLength sum of the lengths of every tour
+     * @param totalNanos sum of the computation times of every tour
+     * @param wallNanos elapsed time of the whole evaluation, 0 while in progress
+     * @param best shortest tour, the one with the lowest start city on ties
+     */
+    public record Summary(
+            int count,
+            long minLength,
+            long maxLength,
+            long totalLength,
+            long totalNanos,
+            long wallNanos,
+            Result best
+    ) {
+        /**
+         * @return average tour length, rounded down
+         */
+        public long averageLength() {
+            return totalLength / count;
+        }
+
+        /**
+         * @return average computation time of a tour, in nanoseconds
+         */
+        public long averageNanos() {
+            return totalNanos / count;
+        }
+    }
+
+    /**
+     * Outcome of {@link #findBest}.
+     * @param count number of start cities
+     * @param pruned number of tours abandoned before they were complete
+     * @param totalNanos sum of the computation times of every tour, abandoned
+     * ones included
+     * @param wallNanos elapsed time of the whole search
+     * @param best shortest tour, the one with the lowest start city on ties
+     */
+    public record Search(int count, int pruned, long totalNanos, long wallNanos, Result best) {
+    }
+
+    /**
+     * Thread-safe accumulator of results.
+     */
+    private static final class Statistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAccumulator minLength = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator maxLength = new LongAccumulator(Math::max, 0);
+        private final LongAdder totalLength = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicReference<Result> best = new AtomicReference<>();
+
+        void add(long length, long nanos) {
+            minLength.accumulate(length);
+            maxLength.accumulate(length);
+            totalLength.add(length);
+            totalNanos.add(nanos);
+            count.increment();
+        }
+
+        /**
+         * Keeps the result if it is better than the best one so far.
+         */
+        void offer(Result result) {
+            best.accumulateAndGet(result, Statistics::better);
+        }
+
+        Summary snapshot(long wallNanos) {
+            return new Summary(
+                    count.intValue(),
+                    minLength.get(),
+                    maxLength.get(),
+                    totalLength.sum(),
+                    totalNanos.sum(),
+                    wallNanos,
+                    best.get()
+            );
+        }
+
+        private static Result better(Result current, Result candidate) {
+            if (current == null) {
+                return candidate;
+            }
+
+            long a = current.tour().length();
+            long b = candidate.tour().length();
+            return b < a || (b == a && candidate.startCity() < current.startCity()) ? candidate : current;
+        }
+    }
+}
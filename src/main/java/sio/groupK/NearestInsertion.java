@@ -0,0 +1,17 @@
+package sio.groupK;
+
+/**
+ * Nearest insertion constructive heuristic for the TSP: the city nearest to
+ * the tour is inserted next, where it lengthens the tour the least.
+ *
+ * <p>The tour takes O(n²) to compute, and is typically 20 to 25% longer than
+ * the optimal one.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class NearestInsertion extends DistanceInsertion {
+
+    public NearestInsertion() {
+        super(false);
+    }
+}
@@ -1,18 +1,51 @@
 package sio.groupK;
 
-import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.LongSupplier;
 import sio.tsp.TspData;
 import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspSpatialIndex;
 import sio.tsp.TspTour;
+import sio.tsp.TspWorkspace;
 
 /**
  * Nearest neighbor constructive heuristic for the TSP
  *
+ * <p>Unvisited cities are kept in a dense array, whose distances to the
+ * current city are gathered then reduced to the nearest one at every step.</p>
+ *
+ * <p>Tours computed against a bound are abandoned as soon as their partial
+ * length plus a {@link RemainingBound} exceeds it.</p>
+ *
  * @author Loïc Herman
  */
 public final class NearestNeighbor implements TspConstructiveHeuristic {
 
+    /**
+     * Number of cities from which the spatial index is used by default.
+     */
+    public static final int DEFAULT_SPATIAL_INDEX_THRESHOLD = 5_000;
+
+    private final int spatialIndexThreshold;
+
+    /**
+     * Creates the heuristic, using a spatial index for instances of at least
+     * {@link #DEFAULT_SPATIAL_INDEX_THRESHOLD} cities.
+     */
+    public NearestNeighbor() {
+        this(DEFAULT_SPATIAL_INDEX_THRESHOLD);
+    }
+
+    /**
+     * Creates the heuristic, using a spatial index to find the nearest unvisited
+     * city for instances of at least the given number of cities, and a linear
+     * scan otherwise. Both produce the same tours.
+     * @param spatialIndexThreshold minimal number of cities to use the spatial index
+     */
+    public NearestNeighbor(int spatialIndexThreshold) {
+        this.spatialIndexThreshold = spatialIndexThreshold;
+    }
+
     /**
      * {@inheritDoc}
      * @param data Data of problem instance
@@ -24,71 +57,173 @@ public final class NearestNeighbor implements TspConstructiveHeuristic {
     public TspTour computeTour(TspData data, int startCityIndex) {
         // fail-fast if data integrity isn't respected
         Objects.requireNonNull(data, "data must not be null");
-        if (startCityIndex < 0 || startCityIndex > data.getNumberOfCities()) {
-            throw new IllegalArgumentException("start city index out of bounds");
+
+        // the workspace is not reused, so its tour can be kept without a copy
+        var workspace = new Workspace(data);
+        long distance = workspace.computeTour(startCityIndex);
+        return new TspTour(data, workspace.tour, distance);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param data Data of problem instance
+     *
+     * @return New workspace, to be used by a single thread
+     */
+    @Override
+    public TspWorkspace newWorkspace(TspData data) {
+        Objects.requireNonNull(data, "data must not be null");
+        return new Workspace(data);
+    }
+
+    /**
+     * Buffers of the heuristic for one instance, allocated once and reused
+     * by every tour.
+     */
+    private final class Workspace implements TspWorkspace {
+        private final TspData data;
+        private final int[] tour;
+        private final TspSpatialIndex index;
+        private final int[] unvisited;
+        private final int[] distances;
+        private RemainingBound remaining;
+        private long length = -1;
+
+        Workspace(TspData data) {
+            this.data = data;
+            int n = data.getNumberOfCities();
+            this.tour = new int[n];
+            if (n >= spatialIndexThreshold) {
+                this.index = new TspSpatialIndex(data);
+                this.unvisited = null;
+                this.distances = null;
+            } else {
+                this.index = null;
+                this.unvisited = new int[n];
+                this.distances = new int[n];
+            }
         }
 
-        // allocate the array of next indices and initialize it to -1
-        int[] next = new int[data.getNumberOfCities()];
-        Arrays.fill(next, -1);
-        long distance = 0;
-
-        // Find first nearest city from start city
-        int t = startCityIndex;
-        next[startCityIndex] = startCityIndex;
-
-        // Loop through while there are still cities to visit
-        while (true) {
-            int nearest = -1;
-            long nearestDistance = Long.MAX_VALUE;
-
-            // iterate over every city to find the nearest one
-            for (int i = 0; i < data.getNumberOfCities(); i++) {
-                if (next[i] >= 0) {
-                    // if the city has already been visited, skip it
-                    continue;
-                }
+        @Override
+        public TspData data() {
+            return data;
+        }
+
+        @Override
+        public long computeTour(int startCityIndex) {
+            // fail-fast if data integrity isn't respected
+            if (startCityIndex < 0 || startCityIndex >= tour.length) {
+                throw new IllegalArgumentException("start city index out of bounds");
+            }
+
+            length = visit(startCityIndex, null);
+            return length;
+        }
+
+        @Override
+        public long computeTour(int startCityIndex, LongSupplier bound) {
+            Objects.requireNonNull(bound, "bound must not be null");
+            if (startCityIndex < 0 || startCityIndex >= tour.length) {
+                throw new IllegalArgumentException("start city index out of bounds");
+            }
+
+            // the bound is only built by the workspaces which need it
+            if (remaining == null) {
+                remaining = new RemainingBound(data);
+            }
+            remaining.reset();
+            remaining.visit(startCityIndex);
+
+            length = visit(startCityIndex, bound);
+            return length;
+        }
+
+        /**
+         * Fills the tour from the given city.
+         * @param bound length above which the tour is abandoned, null to
+         * always complete it
+         * @return the length of the tour, or {@link #ABANDONED}
+         */
+        private long visit(int startCityIndex, LongSupplier bound) {
+            long distance = 0;
+            int visited = 0;
 
-                // else, compute the distance between the current city and the next one
-                // and check if the distance is the smallest one found so far
-                var d = data.getDistance(t, i);
+            // Find first nearest city from start city
+            int t = startCityIndex;
+            tour[visited++] = startCityIndex;
 
-                if (d < nearestDistance) {
-                    nearest = i;
-                    nearestDistance = d;
+            if (index != null) {
+                // the index returns the same nearest city as the scan below
+                index.reset();
+                index.remove(t);
+                for (int nearest; (nearest = index.nearest(t)) >= 0; t = nearest) {
+                    Interruption.check();
+                    index.remove(nearest);
+                    tour[visited++] = nearest;
+                    distance += data.getDistance(t, nearest);
+                    if (bound != null && exceeds(nearest, distance, bound)) {
+                        return ABANDONED;
+                    }
                 }
+
+                return distance;
             }
 
-            // if the nearest city is still -1, it means that there are no more cities to visit
-            if (nearest < 0) {
-                break;
+            // unvisited cities in a dense array, shrunk by swap-remove so that
+            // visited cities are never looked at again
+            int count = 0;
+            for (int i = 0; i < unvisited.length; i++) {
+                if (i != startCityIndex) {
+                    unvisited[count++] = i;
+                }
             }
 
-            // else, insert it into the chain and update the distance
-            next[t] = nearest;
-            next[nearest] = startCityIndex;
-            t = nearest;
+            // Loop through while there are still cities to visit
+            while (count > 0) {
+                Interruption.check();
+
+                // gather the distances from the current city, and take the
+                // smallest one, the lowest city index on ties
+                int k = data.getNearest(t, unvisited, count, distances);
+                int nearest = unvisited[k];
+                unvisited[k] = unvisited[--count];
+
+                // append it to the tour and update the distance
+                tour[visited++] = nearest;
+                t = nearest;
+
+                distance += distances[k];
+                if (bound != null && exceeds(nearest, distance, bound)) {
+                    return ABANDONED;
+                }
+            }
 
-            distance += nearestDistance;
+            return distance;
         }
 
-        // when we are done, return the tour
-        return new TspTour(data, computeTour(next, startCityIndex), distance);
-    }
+        /**
+         * Removes the city just visited from the remaining bound, and checks
+         * whether the tour can still be shorter than the bound.
+         */
+        private boolean exceeds(int city, long distance, LongSupplier bound) {
+            remaining.visit(city);
+            return distance + remaining.get() > bound.getAsLong();
+        }
 
-    /**
-     * Simple method to compute the tour from the array of next indices
-     * @param next the array of next indices
-     * @param s the starting city
-     * @return an array of the city indexes, in order of visit
-     */
-    private int[] computeTour(int[] next, int s) {
-        var res = new int[next.length];
-        for (int i = 0; i < res.length; i++) {
-            res[i] = s;
-            s = next[s];
+        @Override
+        public int cityAt(int position) {
+            if (length < 0) {
+                throw new IllegalStateException("no tour computed yet");
+            }
+            return tour[position];
         }
 
-        return res;
+        @Override
+        public TspTour toTour() {
+            if (length < 0) {
+                throw new IllegalStateException("no tour computed yet");
+            }
+            return new TspTour(data, tour.clone(), length);
+        }
     }
 }
@@ -0,0 +1,483 @@
+package sio.groupK;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+import sio.tsp.TspCandidates;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspDistanceStorage;
+import sio.tsp.TspTour;
+import sio.tsp.TspTourEditor;
+
+/**
+ * Geometric partitioning heuristic for large instances, after Karp.
+ *
+ * <p>The plane is cut recursively at the median city, across the longer
+ * side of the bounding box of the cities, until every cell holds at most
+ * the given number of cities. Each cell is solved independently by a
+ * constructive heuristic, on an instance of its own, and the tours of two
+ * sibling cells are merged by removing one edge of each and joining their
+ * ends. The removed edges are the cheapest pair to replace among the edges
+ * of the cities closest to the cut, on either side.</p>
+ *
+ * <p>Once the cells of a part of the plane holding at most
+ * {@value #REPAIR_SIZE} cities are merged, the tour of the part is repaired
+ * by the local search of {@link TwoOptOrOpt}, on an instance of its own,
+ * started from its boundary cities only, those having one of their
+ * candidate neighbours in another cell. Cells, merges and repairs of
+ * disjoint parts of the plane are independent, and run in parallel on a
+ * fork-join pool. The few cuts between repaired parts are only merged.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class PartitionSolver implements TspConstructiveHeuristic {
+
+    /**
+     * Default maximal number of cities of a cell.
+     */
+    public static final int DEFAULT_CELL_SIZE = 250;
+
+    /**
+     * Smallest maximal cell size, so that both halves of a cut cell hold
+     * the three cities an instance needs.
+     */
+    private static final int MIN_CELL_SIZE = 8;
+
+    /**
+     * Number of cities closest to a cut, on each side, whose edges are
+     * examined to merge the tours of the two sides.
+     */
+    private static final int MERGE_CITIES = 32;
+
+    /**
+     * Number of cities of the parts repaired at once, unless a part has to
+     * be larger to hold two cells. Larger parts leave fewer cuts unrepaired,
+     * smaller ones are more to repair in parallel.
+     */
+    private static final int REPAIR_SIZE = 1 << 16;
+
+    private final TspConstructiveHeuristic heuristic;
+    private final int maxCellSize;
+    private final int parallelism;
+    private final TwoOptOrOpt repair;
+
+    /**
+     * Creates a solver cutting the instance into cells of at most
+     * {@link #DEFAULT_CELL_SIZE} cities, solved on every available
+     * processor, and repairing the boundaries of the cells.
+     * @param heuristic heuristic solving each cell
+     */
+    public PartitionSolver(TspConstructiveHeuristic heuristic) {
+        this(heuristic, DEFAULT_CELL_SIZE, Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * @param heuristic heuristic solving each cell
+     * @param maxCellSize maximal number of cities of a cell
+     * @param parallelism number of threads solving and merging the cells
+     * @param repairBoundaries whether the merged tour is improved around the
+     * boundaries of the cells
+     */
+    public PartitionSolver(
+            TspConstructiveHeuristic heuristic,
+            int maxCellSize,
+            int parallelism,
+            boolean repairBoundaries
+    ) {
+        this.heuristic = Objects.requireNonNull(heuristic, "heuristic must not be null");
+        if (maxCellSize < MIN_CELL_SIZE) {
+            throw new IllegalArgumentException("maxCellSize must be at least " + MIN_CELL_SIZE);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.maxCellSize = maxCellSize;
+        this.parallelism = parallelism;
+        this.repair = repairBoundaries ? new TwoOptOrOpt() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param data Data of problem instance
+     * @param startCityIndex Index of starting city, if needed by the implementation
+     *
+     * @return Solution found by the heuristic
+     */
+    @Override
+    public TspTour computeTour(TspData data, int startCityIndex) {
+        return solve(data, startCityIndex).tour();
+    }
+
+    /**
+     * Computes a tour, and reports the time spent in each phase.
+     * @param data Data of problem instance
+     * @param startCityIndex Index of starting city of the tour
+     * @return tour found, and statistics on its computation
+     * @throws CancellationException if the calling thread is interrupted
+     */
+    public Solution solve(TspData data, int startCityIndex) {
+        Objects.requireNonNull(data, "data must not be null");
+        int n = data.getNumberOfCities();
+        if (startCityIndex < 0 || startCityIndex >= n) {
+            throw new IllegalArgumentException("start city index out of bounds");
+        }
+
+        long start = System.nanoTime();
+        if (n <= maxCellSize) {
+            // the instance is a single cell
+            TspTour tour = heuristic.computeTour(data, startCityIndex);
+            long nanos = System.nanoTime() - start;
+            return new Solution(tour, 1, 0, nanos, 0, nanos);
+        }
+
+        var partition = new Partition(data);
+        var pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(partition.new Cut(0, n, false)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("tour computation interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("tour computation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int[] order = partition.order(startCityIndex);
+        return new Solution(
+                new TspTour(data, order, pathLength(data, order)),
+                partition.cellCount.get(),
+                partition.boundaryCities.intValue(),
+                partition.cellNanos.sum(),
+                partition.repairNanos.sum(),
+                System.nanoTime() - start
+        );
+    }
+
+    private static long pathLength(TspData data, int[] order) {
+        long length = 0;
+        for (int i = 1; i < order.length; i++) {
+            length += data.getDistance(order[i - 1], order[i]);
+        }
+        return length;
+    }
+
+    /**
+     * State of the partitioning of one instance.
+     *
+     * <p>Cells are ranges of {@link #cities}, which each cut rearranges so
+     * that both of its sides are contiguous. Tours are stored as the two
+     * neighbours of each city in {@link #links}, in no particular
+     * orientation, so that merging two tours only relinks four cities.</p>
+     */
+    private final class Partition {
+        private final TspData data;
+        private final int[] cities;
+        private final int[] links;
+        private final int[] cellOf;
+        private final long cellMemoryBudget;
+        private final AtomicInteger cellCount = new AtomicInteger();
+        private final LongAdder boundaryCities = new LongAdder();
+        private final LongAdder cellNanos = new LongAdder();
+        private final LongAdder repairNanos = new LongAdder();
+
+        Partition(TspData data) {
+            int n = data.getNumberOfCities();
+            this.data = data;
+            this.cities = new int[n];
+            for (int city = 0; city < n; city++) {
+                cities[city] = city;
+            }
+            this.links = new int[2 * n];
+            this.cellOf = new int[n];
+            // cells are solved concurrently, and share the memory budget
+            this.cellMemoryBudget = TspDistanceStorage.defaultMemoryBudget() / parallelism;
+        }
+
+        /**
+         * Cuts the cities of a range in two halves, solves and merges them,
+         * and repairs the merged tour if the range is the largest one under
+         * the repair size. Tasks are never serialized.
+         */
+        @SuppressWarnings("serial")
+        private final class Cut extends RecursiveAction {
+            private final int from;
+            private final int to;
+            private final boolean repaired;
+
+            /**
+             * @param repaired whether an enclosing range repairs its tour
+             */
+            Cut(int from, int to, boolean repaired) {
+                this.from = from;
+                this.to = to;
+                this.repaired = repaired;
+            }
+
+            @Override
+            protected void compute() {
+                Interruption.check();
+                if (to - from <= maxCellSize) {
+                    solveCell(from, to);
+                    return;
+                }
+                boolean repairs = repair != null && !repaired
+                        && to - from <= Math.max(REPAIR_SIZE, 2L * maxCellSize);
+
+                int minX = Integer.MAX_VALUE;
+                int minY = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE;
+                int maxY = Integer.MIN_VALUE;
+                for (int i = from; i < to; i++) {
+                    minX = Math.min(minX, data.getXCoordinateForCity(cities[i]));
+                    minY = Math.min(minY, data.getYCoordinateForCity(cities[i]));
+                    maxX = Math.max(maxX, data.getXCoordinateForCity(cities[i]));
+                    maxY = Math.max(maxY, data.getYCoordinateForCity(cities[i]));
+                }
+                IntUnaryOperator coordinate = (long) maxX - minX >= (long) maxY - minY
+                        ? data::getXCoordinateForCity
+                        : data::getYCoordinateForCity;
+
+                int mid = (from + to) >>> 1;
+                select(cities, from, to, mid, coordinate);
+                int cut = coordinate.applyAsInt(cities[mid]);
+
+                invokeAll(new Cut(from, mid, repaired || repairs), new Cut(mid, to, repaired || repairs));
+                merge(from, mid, to, city -> (int) Math.min(
+                        Integer.MAX_VALUE,
+                        Math.abs((long) coordinate.applyAsInt(city) - cut)
+                ));
+                if (repairs) {
+                    repairRange(from, to);
+                }
+            }
+        }
+
+        /**
+         * Solves the cities of a range on an instance of their own, and
+         * links them into a tour.
+         */
+        private void solveCell(int from, int to) {
+            long start = System.nanoTime();
+            int size = to - from;
+            int[] xs = new int[size];
+            int[] ys = new int[size];
+            for (int i = 0; i < size; i++) {
+                xs[i] = data.getXCoordinateForCity(cities[from + i]);
+                ys[i] = data.getYCoordinateForCity(cities[from + i]);
+            }
+
+            int[] tour = heuristic.computeTour(TspData.fromCoordinates(xs, ys, cellMemoryBudget), 0).tour();
+            cellNanos.add(System.nanoTime() - start);
+
+            int cell = cellCount.getAndIncrement();
+            int previous = cities[from + tour[size - 1]];
+            for (int i = 0; i < size; i++) {
+                int city = cities[from + tour[i]];
+                int next = cities[from + tour[i + 1 < size ? i + 1 : 0]];
+                links[2 * city] = previous;
+                links[2 * city + 1] = next;
+                cellOf[city] = cell;
+                previous = city;
+            }
+        }
+
+        /**
+         * Merges the tours of two adjacent ranges into one, joining them
+         * with the cheapest pair of edges among the ones of the cities
+         * closest to the cut.
+         * @param distanceToCut distance of a city to the cut
+         */
+        private void merge(int from, int mid, int to, IntUnaryOperator distanceToCut) {
+            int leftEnd = from + Math.min(MERGE_CITIES, mid - from);
+            int rightEnd = mid + Math.min(MERGE_CITIES, to - mid);
+            select(cities, from, mid, leftEnd - 1, distanceToCut);
+            select(cities, mid, to, rightEnd - 1, distanceToCut);
+
+            long bestDelta = Long.MAX_VALUE;
+            int a = -1;
+            int b = -1;
+            int c = -1;
+            int d = -1;
+            for (int i = from; i < leftEnd; i++) {
+                int a1 = cities[i];
+                for (int s = 0; s < 2; s++) {
+                    int b1 = links[2 * a1 + s];
+                    int removedLeft = data.getDistance(a1, b1);
+                    for (int j = mid; j < rightEnd; j++) {
+                        int c1 = cities[j];
+                        for (int t = 0; t < 2; t++) {
+                            int d1 = links[2 * c1 + t];
+                            long removed = (long) removedLeft + data.getDistance(c1, d1);
+                            // (a1, b1) and (c1, d1) are replaced by (a1, c1) and (b1, d1), or (a1, d1) and (b1, c1)
+                            long straight = (long) data.getDistance(a1, c1) + data.getDistance(b1, d1) - removed;
+                            long crossed = (long) data.getDistance(a1, d1) + data.getDistance(b1, c1) - removed;
+                            if (Math.min(straight, crossed) < bestDelta) {
+                                bestDelta = Math.min(straight, crossed);
+                                a = a1;
+                                b = b1;
+                                c = straight <= crossed ? c1 : d1;
+                                d = straight <= crossed ? d1 : c1;
+                            }
+                        }
+                    }
+                }
+            }
+
+            // both tours are opened into paths a..b and c..d, and joined into a..b d..c
+            relink(a, b, c);
+            relink(b, a, d);
+            relink(c, d, a);
+            relink(d, c, b);
+        }
+
+        private void relink(int city, int oldNeighbour, int newNeighbour) {
+            int slot = links[2 * city] == oldNeighbour ? 2 * city : 2 * city + 1;
+            links[slot] = newNeighbour;
+        }
+
+        /**
+         * Improves the merged tour of a range around the boundaries of its
+         * cells, on an instance of its own whose city i is the i-th city of
+         * the tour.
+         */
+        private void repairRange(int from, int to) {
+            long start = System.nanoTime();
+            int[] order = walk(cities[from], to - from);
+            int[] xs = new int[order.length];
+            int[] ys = new int[order.length];
+            int[] identity = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                xs[i] = data.getXCoordinateForCity(order[i]);
+                ys[i] = data.getYCoordinateForCity(order[i]);
+                identity[i] = i;
+            }
+            // the search reads few distances, which are not worth storing
+            TspData part = TspData.fromCoordinates(xs, ys, 0);
+
+            var search = repair.newSearch(TspTourEditor.of(part, identity));
+            TspCandidates candidates = part.getCandidates(TwoOptOrOpt.DEFAULT_CANDIDATES);
+            int boundary = 0;
+            for (int i = 0; i < order.length; i++) {
+                for (int rank = 0; rank < candidates.getNumberOfCandidates(); rank++) {
+                    if (cellOf[order[candidates.getCandidate(i, rank)]] != cellOf[order[i]]) {
+                        search.push(i);
+                        boundary++;
+                        break;
+                    }
+                }
+            }
+            search.run(start);
+
+            TspTourEditor tour = search.tour();
+            for (int i = 0; i < order.length; i++) {
+                links[2 * order[i]] = order[tour.prev(i)];
+                links[2 * order[i] + 1] = order[tour.next(i)];
+            }
+            boundaryCities.add(boundary);
+            repairNanos.add(System.nanoTime() - start);
+        }
+
+        /**
+         * @return cities of the merged tour in order of visit, from the
+         * given one
+         */
+        int[] order(int startCity) {
+            return walk(startCity, cities.length);
+        }
+
+        /**
+         * Follows the links of a tour of the given number of cities.
+         */
+        private int[] walk(int startCity, int size) {
+            int[] order = new int[size];
+            int previous = startCity;
+            int city = links[2 * startCity + 1];
+            order[0] = startCity;
+            for (int i = 1; i < size; i++) {
+                order[i] = city;
+                int next = links[2 * city] == previous ? links[2 * city + 1] : links[2 * city];
+                previous = city;
+                city = next;
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Rearranges a range of cities so that the city at the given index is
+     * the one it would hold if the range were sorted by key, with no
+     * greater key before it and no lower key after it.
+     */
+    private static void select(int[] cities, int from, int to, int nth, IntUnaryOperator key) {
+        while (to - from > 1) {
+            int pivot = medianOfThree(
+                    key.applyAsInt(cities[from]),
+                    key.applyAsInt(cities[(from + to) >>> 1]),
+                    key.applyAsInt(cities[to - 1])
+            );
+
+            // three-way partition, so that ranges of equal keys end the search
+            int lower = from;
+            int greater = to;
+            int i = from;
+            while (i < greater) {
+                int k = key.applyAsInt(cities[i]);
+                if (k < pivot) {
+                    swap(cities, lower++, i++);
+                } else if (k > pivot) {
+                    swap(cities, i, --greater);
+                } else {
+                    i++;
+                }
+            }
+
+            if (nth < lower) {
+                to = lower;
+            } else if (nth >= greater) {
+                from = greater;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static int medianOfThree(int a, int b, int c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(int[] cities, int i, int j) {
+        int city = cities[i];
+        cities[i] = cities[j];
+        cities[j] = city;
+    }
+
+    /**
+     * Outcome of a partitioned computation.
+     * @param tour computed tour
+     * @param cells number of cells the instance was cut into
+     * @param boundaryCities number of cities the repairs started from
+     * @param cellNanos sum of the times spent solving each cell, building
+     * its instance included, in nanoseconds
+     * @param repairNanos sum of the times spent repairing each part
+     * @param wallNanos elapsed time of the whole computation
+     */
+    public record Solution(
+            TspTour tour,
+            int cells,
+            int boundaryCities,
+            long cellNanos,
+            long repairNanos,
+            long wallNanos
+    ) {
+    }
+}
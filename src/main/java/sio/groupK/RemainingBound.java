@@ -0,0 +1,58 @@
+package sio.groupK;
+
+import sio.tsp.TspCandidates;
+import sio.tsp.TspData;
+
+/**
+ * Lower bound on the length still to be added to a path being built city
+ * by city, until it visits every city.
+ *
+ * <p>Every unvisited city will be joined to the path by an edge at least
+ * as long as the distance to its nearest city, so the sum of these
+ * distances over the unvisited cities is a lower bound. It is updated in
+ * constant time as cities are visited.</p>
+ *
+ * @author Loïc Herman
+ */
+final class RemainingBound {
+
+    private final int[] nearestDistances;
+    private final long total;
+    private long remaining;
+
+    RemainingBound(TspData data) {
+        int n = data.getNumberOfCities();
+        nearestDistances = new int[n];
+        long sum = 0;
+        if (n > 1) {
+            TspCandidates candidates = data.getCandidates(1);
+            for (int city = 0; city < n; city++) {
+                nearestDistances[city] = data.getDistance(city, candidates.getCandidate(city, 0));
+                sum += nearestDistances[city];
+            }
+        }
+        total = sum;
+        remaining = sum;
+    }
+
+    /**
+     * Marks every city as unvisited again.
+     */
+    void reset() {
+        remaining = total;
+    }
+
+    /**
+     * Removes a city from the bound, once it is part of the path.
+     */
+    void visit(int city) {
+        remaining -= nearestDistances[city];
+    }
+
+    /**
+     * @return the lower bound over the cities which are not visited yet
+     */
+    long get() {
+        return remaining;
+    }
+}
@@ -0,0 +1,336 @@
+package sio.groupK;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import sio.tsp.TspCandidates;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+import sio.tsp.TspTourEditor;
+import sio.tsp.TspTourImprovement;
+
+/**
+ * 2-opt and Or-opt local search for the TSP.
+ *
+ * <p>Moves are only searched around the candidate neighbours of each city,
+ * and cities whose surroundings did not change since they were last examined
+ * are skipped (don't-look bits), so that a pass over the tour takes close to
+ * linear time. The first improving move found is applied, until no city has
+ * an improving move left or the budget is exhausted.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class TwoOptOrOpt implements TspTourImprovement {
+
+    /**
+     * Default number of candidate neighbours examined for each city.
+     */
+    public static final int DEFAULT_CANDIDATES = 10;
+
+    /**
+     * Longest segment moved by an Or-opt move.
+     */
+    private static final int MAX_SEGMENT_LENGTH = 3;
+
+    /**
+     * Number of examined cities between two checks of the time budget.
+     */
+    private static final int TIME_CHECK_INTERVAL = 256;
+
+    private final int candidates;
+    private final long timeLimitNanos;
+    private final long maxMoves;
+
+    /**
+     * Creates a local search using {@link #DEFAULT_CANDIDATES} candidates per
+     * city, running until no improving move is left.
+     */
+    public TwoOptOrOpt() {
+        this(DEFAULT_CANDIDATES, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a local search stopping when no improving move is left, or when
+     * the budget is exhausted.
+     * @param candidates number of candidate neighbours examined for each city
+     * @param timeLimit maximal duration of an improvement, null for no limit
+     * @param maxMoves maximal number of moves applied to a tour
+     */
+    public TwoOptOrOpt(int candidates, Duration timeLimit, long maxMoves) {
+        if (candidates < 1) {
+            throw new IllegalArgumentException("candidates must be positive");
+        }
+        if (maxMoves < 0) {
+            throw new IllegalArgumentException("maxMoves must not be negative");
+        }
+        this.candidates = candidates;
+        this.timeLimitNanos = timeLimit == null ? Long.MAX_VALUE : timeLimit.toNanos();
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param tour Tour to improve
+     *
+     * @return Improved tour
+     */
+    @Override
+    public TspTour improve(TspTour tour) {
+        Objects.requireNonNull(tour, "tour must not be null");
+        long start = System.nanoTime();
+        TspData data = tour.data();
+        int[] order = tour.tour();
+        if (order.length < 5) {
+            return tour;
+        }
+
+        var search = newSearch(TspTourEditor.of(data, order));
+        for (int city : order) {
+            search.push(city);
+        }
+        search.run(start);
+        return search.tour.toTour(order[0]);
+    }
+
+    /**
+     * Creates a search improving the given tour in place, whose cities to
+     * examine are then pushed, see {@link Search#push(int)}.
+     */
+    Search newSearch(TspTourEditor tour) {
+        return new Search(tour, tour.getData().getCandidates(candidates));
+    }
+
+    /**
+     * State of the search on one tour: the tour being improved, and the
+     * queue of cities to examine.
+     *
+     * <p>The moves applied to the tour can be recorded in a journal, so that
+     * they can be undone, see {@link #mark()} and {@link #rollback()}.</p>
+     */
+    final class Search {
+        private final TspTourEditor tour;
+        private final TspData data;
+        private final TspCandidates candidates;
+        private final int k;
+        private final int n;
+
+        // cities whose don't-look bit is off, in a circular queue
+        private final int[] queue;
+        private final boolean[] queued;
+        private int head;
+        private int queueSize;
+
+        // 2-opt moves applied since the last mark, four cities each
+        private int[] journal = new int[64];
+        private int journalSize;
+
+        Search(TspTourEditor tour, TspCandidates candidates) {
+            this.tour = tour;
+            this.data = tour.getData();
+            this.candidates = candidates;
+            this.k = candidates.getNumberOfCandidates();
+            this.n = tour.size();
+            this.queue = new int[n];
+            this.queued = new boolean[n];
+        }
+
+        /**
+         * Applies improving moves around the queued cities until none is
+         * left, or the budget is exhausted.
+         * @param start value of {@link System#nanoTime()} the time limit
+         * is counted from
+         * @return the length removed from the tour
+         */
+        long run(long start) {
+            long initialLength = tour.cycleLength();
+            long moves = 0;
+            long examined = 0;
+            while (queueSize > 0 && moves < maxMoves) {
+                if (++examined % TIME_CHECK_INTERVAL == 0) {
+                    Interruption.check();
+                    if (System.nanoTime() - start >= timeLimitNanos) {
+                        break;
+                    }
+                }
+
+                int a = poll();
+                if (twoOpt(a) || orOpt(a)) {
+                    moves++;
+                    push(a);
+                }
+            }
+            return initialLength - tour.cycleLength();
+        }
+
+        /**
+         * Starts recording the moves applied to the tour, forgetting the
+         * ones recorded so far.
+         */
+        void mark() {
+            journalSize = 0;
+            tour.setMoveListener(this::record);
+        }
+
+        /**
+         * Undoes the moves applied since the last mark, most recent first,
+         * and stops recording them. Queued cities are dropped.
+         */
+        void rollback() {
+            tour.setMoveListener(null);
+            for (int i = journalSize - 4; i >= 0; i -= 4) {
+                // (a, b) and (c, d) were replaced by (a, c) and (b, d)
+                tour.twoOptMove(journal[i], journal[i + 2], journal[i + 1], journal[i + 3]);
+            }
+            journalSize = 0;
+            while (queueSize > 0) {
+                poll();
+            }
+        }
+
+        /**
+         * @return the tour being improved
+         */
+        TspTourEditor tour() {
+            return tour;
+        }
+
+        /**
+         * Looks for a 2-opt move removing an edge of the given city, and
+         * applies the first improving one.
+         */
+        private boolean twoOpt(int a) {
+            for (int forward = 0; forward < 2; forward++) {
+                int b = forward == 0 ? tour.next(a) : tour.prev(a);
+                int dab = data.getDistance(a, b);
+                for (int r = 0; r < k; r++) {
+                    int c = candidates.getCandidate(a, r);
+                    int dac = data.getDistance(a, c);
+                    // the new edge must be shorter than the removed one for the move to improve
+                    if (dac >= dab) {
+                        break;
+                    }
+
+                    int d = forward == 0 ? tour.next(c) : tour.prev(c);
+                    if (c == b || d == a) {
+                        continue;
+                    }
+                    long gain = (long) dab + data.getDistance(c, d) - dac - data.getDistance(b, d);
+                    if (gain > 0) {
+                        if (forward == 0) {
+                            tour.twoOptMove(a, b, c, d);
+                        } else {
+                            tour.twoOptMove(b, a, d, c);
+                        }
+                        push(b);
+                        push(c);
+                        push(d);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Looks for an Or-opt move, relocating a segment of up to
+         * {@link #MAX_SEGMENT_LENGTH} cities starting or ending at the given
+         * city next to one of its candidates, and applies the first improving
+         * one.
+         */
+        private boolean orOpt(int a) {
+            for (int length = 1; length <= MAX_SEGMENT_LENGTH && length + 2 < n; length++) {
+                for (int end = 0; end < 2; end++) {
+                    if (length == 1 && end == 1) {
+                        break;
+                    }
+
+                    int s1 = a;
+                    int s2 = a;
+                    for (int i = 1; i < length; i++) {
+                        if (end == 0) {
+                            s2 = tour.next(s2);
+                        } else {
+                            s1 = tour.prev(s1);
+                        }
+                    }
+                    int p = tour.prev(s1);
+                    int nx = tour.next(s2);
+                    long removeGain = (long) data.getDistance(p, s1) + data.getDistance(s2, nx)
+                            - data.getDistance(p, nx);
+                    if (removeGain <= 0) {
+                        continue;
+                    }
+
+                    for (int r = 0; r < k; r++) {
+                        int c = candidates.getCandidate(a, r);
+                        // the new edge from a must be shorter than the gain of removing the segment
+                        if (data.getDistance(a, c) >= removeGain) {
+                            break;
+                        }
+                        if (tour.between(s1, c, s2)) {
+                            continue;
+                        }
+
+                        // insert between c and one of its neighbours
+                        for (int side = 0; side < 2; side++) {
+                            int x = side == 0 ? c : tour.prev(c);
+                            int y = tour.next(x);
+                            if (tour.between(s1, x, s2) || tour.between(s1, y, s2) || y == p) {
+                                continue;
+                            }
+
+                            long dxy = data.getDistance(x, y);
+                            long reversedCost = data.getDistance(x, s2) + data.getDistance(s1, y) - dxy;
+                            long forwardCost = length == 1
+                                    ? Long.MAX_VALUE
+                                    : data.getDistance(x, s1) + data.getDistance(s2, y) - dxy;
+                            if (removeGain > Math.min(reversedCost, forwardCost)) {
+                                tour.moveSegment(s1, s2, x, forwardCost >= reversedCost);
+                                push(p);
+                                push(s1);
+                                push(s2);
+                                push(nx);
+                                push(x);
+                                push(y);
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Records a 2-opt move applied to the tour since the last mark.
+         */
+        private void record(int a, int b, int c, int d) {
+            if (journalSize == journal.length) {
+                journal = Arrays.copyOf(journal, 2 * journal.length);
+            }
+            journal[journalSize++] = a;
+            journal[journalSize++] = b;
+            journal[journalSize++] = c;
+            journal[journalSize++] = d;
+        }
+
+        void push(int city) {
+            if (!queued[city]) {
+                queued[city] = true;
+                int tail = head + queueSize;
+                queue[tail >= n ? tail - n : tail] = city;
+                queueSize++;
+            }
+        }
+
+        private int poll() {
+            int city = queue[head];
+            queued[city] = false;
+            if (++head == n) {
+                head = 0;
+            }
+            queueSize--;
+            return city;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package sio.groupK.batch;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import sio.groupK.LinKernighan;
+import sio.groupK.TwoOptOrOpt;
+import sio.groupK.gui.model.TspHeuristic;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspTourImprovement;
+
+/**
+ * Batch job: a set of instances, each solved by a set of heuristics from
+ * selected start cities.
+ *
+ * <p>Jobs are read from properties files with the following keys, only
+ * {@code instances} being required:</p>
+ * <ul>
+ *     <li>{@code instances}: data files, or directories whose {@code .dat}
+ *     files are all taken, separated by commas</li>
+ *     <li>{@code heuristics}: names of {@link TspHeuristic} values,
+ *     {@code NN} by default</li>
+ *     <li>{@code improvements}: names of {@link Improvement} values, applied
+ *     in order after every heuristic, none by default</li>
+ *     <li>{@code starts}: start cities, see {@link StartSelection},
+ *     {@code all} by default</li>
+ *     <li>{@code output}: path of the result files without extension,
+ *     {@code batch-results} by default</li>
+ *     <li>{@code formats}: {@code csv} and/or {@code json}, both by default</li>
+ *     <li>{@code prefetch}: number of instances loaded ahead of the one
+ *     being solved, 1 by default</li>
+ *     <li>{@code parallelism}: number of tours computed at once, the number
+ *     of processors by default</li>
+ *     <li>{@code snapshots}: whether instances are loaded through binary
+ *     snapshots, false by default</li>
+ *     <li>{@code optimal.<file name>}: optimal length of an instance, to
+ *     report the gap of the tours</li>
+ * </ul>
+ * <p>Relative paths are resolved from the working directory.</p>
+ *
+ * @param instances data files to solve, in order
+ * @param heuristics heuristics run on every instance
+ * @param improvements improvements applied after every heuristic
+ * @param starts start cities of the tours
+ * @param output path of the result files, without extension
+ * @param formats formats of the result files
+ * @param prefetch number of instances loaded ahead
+ * @param parallelism number of tours computed at once
+ * @param snapshots whether instances are loaded through binary snapshots
+ * @param optimalLengths known optimal lengths, by file name without extension
+ *
+ * @author Loïc Herman
+ */
+public record BatchJob(
+        List<Path> instances,
+        List<TspHeuristic> heuristics,
+        List<Improvement> improvements,
+        StartSelection starts,
+        Path output,
+        Set<Format> formats,
+        int prefetch,
+        int parallelism,
+        boolean snapshots,
+        Map<String, Long> optimalLengths
+) {
+
+    public BatchJob {
+        if (instances.isEmpty()) {
+            throw new IllegalArgumentException("at least one instance is required");
+        }
+        if (heuristics.isEmpty()) {
+            throw new IllegalArgumentException("at least one heuristic is required");
+        }
+        if (prefetch < 0) {
+            throw new IllegalArgumentException("prefetch must not be negative");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (formats.isEmpty()) {
+            throw new IllegalArgumentException("at least one format is required");
+        }
+        instances = List.copyOf(instances);
+        heuristics = List.copyOf(heuristics);
+        improvements = List.copyOf(improvements);
+        formats = Set.copyOf(formats);
+        optimalLengths = Map.copyOf(optimalLengths);
+    }
+
+    /**
+     * Improvement stages available to batch jobs.
+     */
+    public enum Improvement {
+        TWO_OPT_OR_OPT {
+            @Override
+            public TspTourImprovement getImprovementInstance() {
+                return new TwoOptOrOpt();
+            }
+        },
+        LIN_KERNIGHAN {
+            @Override
+            public TspTourImprovement getImprovementInstance() {
+                return new LinKernighan();
+            }
+        };
+
+        /**
+         * @return Instance of the current improvement
+         */
+        public abstract TspTourImprovement getImprovementInstance();
+    }
+
+    /**
+     * Formats of the result files.
+     */
+    public enum Format {
+        CSV, JSON
+    }
+
+    /**
+     * Reads a job from a properties file.
+     * @param spec path of the job spec
+     * @return job described by the file
+     * @throws IOException if the file or an instance directory can't be read
+     * @throws IllegalArgumentException if the spec is malformed
+     */
+    public static BatchJob load(Path spec) throws IOException {
+        var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(spec, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        String instances = properties.getProperty("instances");
+        if (instances == null) {
+            throw new IllegalArgumentException("missing instances in " + spec);
+        }
+
+        var optimalLengths = new HashMap<String, Long>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("optimal.")) {
+                optimalLengths.put(key.substring("optimal.".length()), parseLong(properties, key));
+            }
+        }
+
+        return new BatchJob(
+                expandInstances(list(instances)),
+                parseAll(properties.getProperty("heuristics", "NN"), TspHeuristic::valueOf),
+                parseAll(properties.getProperty("improvements", ""), Improvement::valueOf),
+                StartSelection.parse(properties.getProperty("starts", "all")),
+                Path.of(properties.getProperty("output", "batch-results").trim()),
+                Set.copyOf(BatchJob.<Format>parseAll(properties.getProperty("formats", "csv,json"), Format::valueOf)),
+                (int) parseLong(properties, "prefetch", 1),
+                (int) parseLong(properties, "parallelism", Runtime.getRuntime().availableProcessors()),
+                Boolean.parseBoolean(properties.getProperty("snapshots", "false").trim()),
+                optimalLengths
+        );
+    }
+
+    /**
+     * Returns the heuristic of a job entry, followed by the improvements.
+     * @param heuristic constructive heuristic
+     * @return heuristic chained with every improvement of the job
+     */
+    public TspConstructiveHeuristic compose(TspHeuristic heuristic) {
+        var composed = heuristic.getHeuristicInstance();
+        for (var improvement : improvements) {
+            composed = composed.andThen(improvement.getImprovementInstance());
+        }
+        return composed;
+    }
+
+    /**
+     * Returns the name of a job entry, the heuristic followed by the improvements.
+     * @param heuristic constructive heuristic
+     * @return name such as {@code NN+TWO_OPT_OR_OPT}
+     */
+    public String name(TspHeuristic heuristic) {
+        var name = new StringBuilder(heuristic.name());
+        improvements.forEach(improvement -> name.append('+').append(improvement.name()));
+        return name.toString();
+    }
+
+    /**
+     * Expands directories into their data files, sorted by name.
+     */
+    private static List<Path> expandInstances(List<String> entries) throws IOException {
+        var instances = new ArrayList<Path>();
+        for (String entry : entries) {
+            var path = Path.of(entry);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    files.filter(file -> file.getFileName().toString().endsWith(".dat"))
+                            .sorted()
+                            .forEach(instances::add);
+                }
+            } else {
+                instances.add(path);
+            }
+        }
+        return instances;
+    }
+
+    private static <T> List<T> parseAll(String values, Function<String, T> parser) {
+        var parsed = new ArrayList<T>();
+        for (String value : list(values)) {
+            try {
+                parsed.add(parser.apply(value.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown value: " + value, e);
+            }
+        }
+        return parsed;
+    }
+
+    private static List<String> list(String values) {
+        return Arrays.stream(values.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+
+    private static long parseLong(Properties properties, String key, long defaultValue) {
+        return properties.containsKey(key) ? parseLong(properties, key) : defaultValue;
+    }
+
+    private static long parseLong(Properties properties, String key) {
+        try {
+            return Long.parseLong(properties.getProperty(key).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("malformed " + key + ": " + properties.getProperty(key), e);
+        }
+    }
+}
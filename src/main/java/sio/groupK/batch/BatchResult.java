@@ -0,0 +1,51 @@
+package sio.groupK.batch;
+
+/**
+ * Result of one heuristic of a batch job on one instance. Tour lengths
+ * include the edge closing the tour, as the optimal length does.
+ *
+ * @param instance data file of the instance
+ * @param cities number of cities of the instance
+ * @param heuristic name of the heuristic and its improvements
+ * @param starts number of tours computed
+ * @param minLength length of the shortest tour
+ * @param averageLength average tour length, rounded down
+ * @param maxLength length of the longest tour
+ * @param bestStart start city of the shortest tour
+ * @param optimalLength known optimal length of the instance, -1 if unknown
+ * @param averageMillis average computation time of a tour, in milliseconds
+ * @param wallSeconds elapsed time of every tour, in seconds
+ * @param loadSeconds time taken to load the instance, in seconds
+ *
+ * @author Loïc Herman
+ */
+public record BatchResult(
+        String instance,
+        int cities,
+        String heuristic,
+        int starts,
+        long minLength,
+        long averageLength,
+        long maxLength,
+        int bestStart,
+        long optimalLength,
+        double averageMillis,
+        double wallSeconds,
+        double loadSeconds
+) {
+    /**
+     * @return ratio between the shortest tour and the optimal length, minus
+     * one, or NaN if the optimal length is unknown
+     */
+    public double minGap() {
+        return optimalLength > 0 ? (double) minLength / optimalLength - 1 : Double.NaN;
+    }
+
+    /**
+     * @return ratio between the average tour and the optimal length, minus
+     * one, or NaN if the optimal length is unknown
+     */
+    public double averageGap() {
+        return optimalLength > 0 ? (double) averageLength / optimalLength - 1 : Double.NaN;
+    }
+}
@@ -0,0 +1,233 @@
+package sio.groupK.batch;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import sio.groupK.MultiStartEvaluator;
+import sio.tsp.TspData;
+import sio.tsp.TspDistanceStorage;
+import sio.tsp.TspSnapshot;
+
+/**
+ * Runs a {@link BatchJob}, instance after instance.
+ *
+ * <p>The next instances are loaded by a background thread while the current
+ * one is solved, at most {@link BatchJob#prefetch()} of them ahead. An
+ * instance is dropped as soon as its last heuristic is done, and the memory
+ * budget of the distance storage is shared between the instances loaded at
+ * once, so that memory stays bounded whatever the size of the job.</p>
+ *
+ * <p>An instance that fails to load or to solve is reported and skipped,
+ * and the job goes on with the next one.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class BatchRunner {
+
+    private final BatchJob job;
+    private final PrintStream log;
+
+    /**
+     * @param job job to run
+     * @param log stream receiving the progress of the job
+     */
+    public BatchRunner(BatchJob job, PrintStream log) {
+        this.job = job;
+        this.log = log;
+    }
+
+    /**
+     * Runs the job given as a properties file, see {@link BatchJob}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: BatchRunner <job.properties>");
+            System.exit(2);
+        }
+
+        var summary = new BatchRunner(BatchJob.load(Path.of(args[0])), System.out).run();
+        if (summary.failures() > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the job, writing its results as they complete.
+     * @return summary of the job
+     * @throws IOException if the result files can't be written
+     */
+    public Summary run() throws IOException {
+        long start = System.nanoTime();
+        long waitingNanos = 0;
+        int solved = 0;
+        int failures = 0;
+
+        // every instance loaded at once gets its share of the distance budget
+        long memoryBudget = TspDistanceStorage.defaultMemoryBudget() / (job.prefetch() + 1);
+        ExecutorService loader = Executors.newSingleThreadExecutor(task -> {
+            var thread = new Thread(task, "batch-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        var instances = job.instances();
+        var pending = new ArrayDeque<Future<Loaded>>();
+        int nextLoad = 0;
+        try (var evaluator = new MultiStartEvaluator(job.parallelism()); var files = new ResultFiles(job)) {
+            for (int i = 0; i < instances.size(); i++) {
+                // keep the next instances loading while this one is solved
+                while (nextLoad < instances.size() && nextLoad <= i + job.prefetch()) {
+                    pending.add(loader.submit(load(instances.get(nextLoad++), memoryBudget)));
+                }
+
+                Loaded loaded;
+                long waitStart = System.nanoTime();
+                try {
+                    loaded = pending.remove().get();
+                } catch (ExecutionException e) {
+                    failures++;
+                    log.printf("Failed to load %s: %s%n", instances.get(i), e.getCause());
+                    continue;
+                } finally {
+                    waitingNanos += System.nanoTime() - waitStart;
+                }
+
+                try {
+                    solve(loaded, evaluator, files);
+                    solved++;
+                } catch (RuntimeException e) {
+                    failures++;
+                    log.printf("Failed to solve %s: %s%n", loaded.path(), e);
+                }
+                // nothing references the instance anymore, it can be collected
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("batch interrupted", e);
+        } finally {
+            loader.shutdownNow();
+        }
+
+        var summary = new Summary(solved, failures, (System.nanoTime() - start) / 1e9, waitingNanos / 1e9);
+        log.printf(
+                "Solved %d instances (%d failures) in %.2f s, %.2f s waiting for instances to load%n",
+                summary.solved(),
+                summary.failures(),
+                summary.wallSeconds(),
+                summary.waitingSeconds()
+        );
+        return summary;
+    }
+
+    /**
+     * Runs every heuristic of the job on a loaded instance.
+     */
+    private void solve(Loaded loaded, MultiStartEvaluator evaluator, ResultFiles files) throws IOException {
+        TspData data = loaded.data();
+        int[] starts = job.starts().select(data.getNumberOfCities());
+        long optimalLength = job.optimalLengths().getOrDefault(baseName(loaded.path()), -1L);
+
+        for (var heuristic : job.heuristics()) {
+            var cycles = new CycleLengths();
+            var summary = evaluator.evaluate(data, job.compose(heuristic), starts, cycles);
+            var result = new BatchResult(
+                    loaded.path().toString(),
+                    data.getNumberOfCities(),
+                    job.name(heuristic),
+                    summary.count(),
+                    cycles.min,
+                    cycles.total / summary.count(),
+                    cycles.max,
+                    cycles.bestStart,
+                    optimalLength,
+                    summary.averageNanos() / 1e6,
+                    summary.wallNanos() / 1e9,
+                    loaded.nanos() / 1e9
+            );
+            files.add(result);
+            log.printf(
+                    "%s %s: min %d, avg %d, max %d over %d starts in %.2f s%n",
+                    result.instance(),
+                    result.heuristic(),
+                    result.minLength(),
+                    result.averageLength(),
+                    result.maxLength(),
+                    result.starts(),
+                    result.wallSeconds()
+            );
+        }
+    }
+
+    /**
+     * Returns the task loading an instance.
+     */
+    private Callable<Loaded> load(Path path, long memoryBudget) {
+        return () -> {
+            long start = System.nanoTime();
+            TspData data = job.snapshots()
+                    ? TspSnapshot.load(path, false, memoryBudget)
+                    : TspData.fromFile(path.toString(), memoryBudget);
+            return new Loaded(path, data, System.nanoTime() - start);
+        };
+    }
+
+    /**
+     * Returns the file name of an instance without its extension, which is
+     * the key of its optimal length.
+     */
+    private static String baseName(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Statistics over the lengths of the tours closed by their last edge,
+     * which is how optimal lengths are given, whereas the evaluator measures
+     * open tours.
+     */
+    private static final class CycleLengths implements MultiStartEvaluator.Listener {
+        private long min = Long.MAX_VALUE;
+        private long max;
+        private long total;
+        private int bestStart = Integer.MAX_VALUE;
+
+        @Override
+        public synchronized void onResult(MultiStartEvaluator.Result result, MultiStartEvaluator.Summary progress) {
+            var tour = result.tour();
+            int last = tour.cityAt(tour.size() - 1);
+            long length = tour.length() + tour.data().getDistance(last, tour.cityAt(0));
+            if (length < min || (length == min && result.startCity() < bestStart)) {
+                min = length;
+                bestStart = result.startCity();
+            }
+            max = Math.max(max, length);
+            total += length;
+        }
+    }
+
+    /**
+     * Instance loaded by the background thread.
+     * @param path data file of the instance
+     * @param data loaded instance
+     * @param nanos time taken to load it, in nanoseconds
+     */
+    private record Loaded(Path path, TspData data, long nanos) {
+    }
+
+    /**
+     * Summary of a job.
+     * @param solved number of instances solved
+     * @param failures number of instances which failed to load or to solve
+     * @param wallSeconds elapsed time of the whole job, in seconds
+     * @param waitingSeconds time spent waiting for instances to load, in seconds
+     */
+    public record Summary(int solved, int failures, double wallSeconds, double waitingSeconds) {
+    }
+}
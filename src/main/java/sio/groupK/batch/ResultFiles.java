@@ -0,0 +1,162 @@
+package sio.groupK.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result files of a batch job. CSV rows are written and flushed as results
+ * arrive, so that an interrupted job keeps what it computed, and the JSON
+ * file is written once the job is done.
+ *
+ * @author Loïc Herman
+ */
+final class ResultFiles implements Closeable {
+
+    private static final String CSV_HEADER = "instance,cities,heuristic,starts,min_length,avg_length,max_length,"
+            + "best_start,optimal_length,min_gap,avg_gap,avg_ms,wall_s,load_s";
+
+    private final BufferedWriter csv;
+    private final Path json;
+    private final List<BatchResult> results = new ArrayList<>();
+
+    /**
+     * Creates the result files of a job, replacing existing ones.
+     * @param job job whose results are written
+     * @throws IOException if a file can't be created
+     */
+    ResultFiles(BatchJob job) throws IOException {
+        var parent = job.output().toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        if (job.formats().contains(BatchJob.Format.CSV)) {
+            csv = Files.newBufferedWriter(withExtension(job.output(), ".csv"), StandardCharsets.UTF_8);
+            csv.write(CSV_HEADER);
+            csv.newLine();
+            csv.flush();
+        } else {
+            csv = null;
+        }
+        json = job.formats().contains(BatchJob.Format.JSON) ? withExtension(job.output(), ".json") : null;
+    }
+
+    /**
+     * Records a result.
+     * @param result result of one heuristic on one instance
+     * @throws IOException if the CSV file can't be written
+     */
+    void add(BatchResult result) throws IOException {
+        results.add(result);
+        if (csv != null) {
+            csv.write(String.join(",",
+                    csvString(result.instance()),
+                    Integer.toString(result.cities()),
+                    csvString(result.heuristic()),
+                    Integer.toString(result.starts()),
+                    Long.toString(result.minLength()),
+                    Long.toString(result.averageLength()),
+                    Long.toString(result.maxLength()),
+                    Integer.toString(result.bestStart()),
+                    result.optimalLength() > 0 ? Long.toString(result.optimalLength()) : "",
+                    number(result.minGap()),
+                    number(result.averageGap()),
+                    number(result.averageMillis()),
+                    number(result.wallSeconds()),
+                    number(result.loadSeconds())
+            ));
+            csv.newLine();
+            csv.flush();
+        }
+    }
+
+    /**
+     * Writes the JSON file, and closes the CSV file.
+     * @throws IOException if a file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (json != null) {
+                writeJson();
+            }
+        } finally {
+            if (csv != null) {
+                csv.close();
+            }
+        }
+    }
+
+    private void writeJson() throws IOException {
+        try (var writer = Files.newBufferedWriter(json, StandardCharsets.UTF_8)) {
+            writer.write("[");
+            for (int i = 0; i < results.size(); i++) {
+                var result = results.get(i);
+                writer.write(i == 0 ? "\n" : ",\n");
+                writer.write("  {\"instance\": " + jsonString(result.instance())
+                        + ", \"cities\": " + result.cities()
+                        + ", \"heuristic\": " + jsonString(result.heuristic())
+                        + ", \"starts\": " + result.starts()
+                        + ", \"minLength\": " + result.minLength()
+                        + ", \"averageLength\": " + result.averageLength()
+                        + ", \"maxLength\": " + result.maxLength()
+                        + ", \"bestStart\": " + result.bestStart()
+                        + ", \"optimalLength\": " + (result.optimalLength() > 0 ? result.optimalLength() : "null")
+                        + ", \"minGap\": " + jsonNumber(result.minGap())
+                        + ", \"averageGap\": " + jsonNumber(result.averageGap())
+                        + ", \"averageMillis\": " + jsonNumber(result.averageMillis())
+                        + ", \"wallSeconds\": " + jsonNumber(result.wallSeconds())
+                        + ", \"loadSeconds\": " + jsonNumber(result.loadSeconds())
+                        + "}");
+            }
+            writer.write(results.isEmpty() ? "]\n" : "\n]\n");
+        }
+    }
+
+    private static Path withExtension(Path output, String extension) {
+        return output.resolveSibling(output.getFileName() + extension);
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.6f", value);
+    }
+
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) ? "null" : number(value);
+    }
+
+    private static String csvString(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static String jsonString(String value) {
+        var escaped = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.append('"').toString();
+    }
+}
@@ -0,0 +1,125 @@
+package sio.groupK.batch;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Start cities from which the tours of a batch job are computed.
+ *
+ * <p>Written in a job spec as {@code all}, {@code sample:<count>} or
+ * {@code sample:<count>:<seed>} for a random sample which is the same from
+ * one run to the next, or {@code fixed:<city>,<city>,...}.</p>
+ *
+ * @param kind how start cities are selected
+ * @param sampleSize number of sampled cities, for {@link Kind#SAMPLE}
+ * @param seed seed of the sample, for {@link Kind#SAMPLE}
+ * @param cities start cities, for {@link Kind#FIXED}
+ *
+ * @author Loïc Herman
+ */
+public record StartSelection(Kind kind, int sampleSize, long seed, int[] cities) {
+
+    /**
+     * Seed of samples whose spec does not give one.
+     */
+    public static final long DEFAULT_SEED = 42;
+
+    public enum Kind {
+        ALL, SAMPLE, FIXED
+    }
+
+    public StartSelection {
+        if (kind == Kind.SAMPLE && sampleSize < 1) {
+            throw new IllegalArgumentException("sample size must be positive");
+        }
+        if (kind == Kind.FIXED && (cities == null || cities.length == 0)) {
+            throw new IllegalArgumentException("at least one fixed start city is required");
+        }
+    }
+
+    /**
+     * Parses a selection written as in a job spec.
+     * @param spec selection, such as {@code sample:50}
+     * @return parsed selection
+     * @throws IllegalArgumentException if the selection is malformed
+     */
+    public static StartSelection parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        String kind = parts[0].trim().toLowerCase();
+        try {
+            if (kind.equals("all") && parts.length == 1) {
+                return new StartSelection(Kind.ALL, 0, 0, null);
+            }
+            if (kind.equals("sample") && (parts.length == 2 || parts.length == 3)) {
+                long seed = parts.length == 3 ? Long.parseLong(parts[2].trim()) : DEFAULT_SEED;
+                return new StartSelection(Kind.SAMPLE, Integer.parseInt(parts[1].trim()), seed, null);
+            }
+            if (kind.equals("fixed") && parts.length == 2) {
+                int[] cities = Arrays.stream(parts[1].split(","))
+                        .map(String::trim)
+                        .mapToInt(Integer::parseInt)
+                        .toArray();
+                return new StartSelection(Kind.FIXED, 0, 0, cities);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("malformed start cities: " + spec, e);
+        }
+        throw new IllegalArgumentException("malformed start cities: " + spec);
+    }
+
+    /**
+     * Selects the start cities of an instance.
+     * @param numberOfCities number of cities of the instance
+     * @return start cities, in increasing order for a sample
+     * @throws IllegalArgumentException if a fixed city is not a city of the instance
+     */
+    public int[] select(int numberOfCities) {
+        return switch (kind) {
+            case ALL -> all(numberOfCities);
+            case SAMPLE -> sample(numberOfCities);
+            case FIXED -> fixed(numberOfCities);
+        };
+    }
+
+    private int[] sample(int numberOfCities) {
+        // partial Fisher-Yates shuffle, seeded so that runs can be compared
+        int[] all = all(numberOfCities);
+        int count = Math.min(sampleSize, numberOfCities);
+        var random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(numberOfCities - i);
+            int tmp = all[i];
+            all[i] = all[j];
+            all[j] = tmp;
+        }
+        int[] sample = Arrays.copyOf(all, count);
+        Arrays.sort(sample);
+        return sample;
+    }
+
+    private int[] fixed(int numberOfCities) {
+        for (int city : cities) {
+            if (city < 0 || city >= numberOfCities) {
+                throw new IllegalArgumentException("start city " + city + " out of bounds");
+            }
+        }
+        return cities.clone();
+    }
+
+    private static int[] all(int numberOfCities) {
+        int[] cities = new int[numberOfCities];
+        for (int i = 0; i < numberOfCities; i++) {
+            cities[i] = i;
+        }
+        return cities;
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case ALL -> "all";
+            case SAMPLE -> "sample:" + sampleSize + ":" + seed;
+            case FIXED -> "fixed:" + Arrays.toString(cities).replaceAll("[\\[\\] ]", "");
+        };
+    }
+}
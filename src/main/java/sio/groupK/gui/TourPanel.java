@@ -1,19 +1,45 @@
 package sio.groupK.gui;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import javax.swing.*;
+import sio.tsp.TspData;
 import sio.tsp.TspTour;
 
 import static java.util.Objects.isNull;
 
 /**
  * Main panel for the application that can visualise a TSP tour.
+ *
+ * <p>The tour is rendered once into an image, repainted as is until the tour
+ * or the size of the panel changes. Cities are projected in tour order into
+ * buffers of pixel coordinates, consecutive cities falling in the same pixel
+ * being merged, so that large tours are drawn with at most one point per
+ * pixel visited. Beyond {@value #DETAILED_POINTS} points, cities are not
+ * marked and the tour is drawn as opaque polylines.</p>
  */
 public class TourPanel extends JPanel {
 
     private static final int BORDER = 10;
 
+    // above this number of projected points, cities are not marked, and lines are neither anti-aliased nor
+    // translucent, blending being an order of magnitude slower than plain drawing
+    private static final int DETAILED_POINTS = 10_000;
+    private static final Color LINE_COLOR = new Color(0, 0, 0, 0.5f);
+    private static final Color OPAQUE_LINE_COLOR = new Color(128, 128, 128);
+
+    // polylines are rasterised as a single shape, whose cost grows faster than its number of points
+    private static final int POLYLINE_CHUNK = 256;
+
     private TspTour tour;
+    private Bounds bounds;
+
+    // projected points of the tour, reused from one rendering to the next
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private final int[] chunkXs = new int[POLYLINE_CHUNK + 1];
+    private final int[] chunkYs = new int[POLYLINE_CHUNK + 1];
+    private BufferedImage image;
 
     public TourPanel() {
         // set a white background
@@ -23,6 +49,8 @@ public class TourPanel extends JPanel {
     public void setTour(TspTour tour) {
         // when we get a new tour, assign it and repaint.
         this.tour = tour;
+        this.bounds = isNull(tour) ? null : Bounds.of(tour.data());
+        this.image = null;
         repaint();
     }
 
@@ -33,99 +61,144 @@ public class TourPanel extends JPanel {
             return;
         }
 
-        // boilerplate code to enable anti-aliasing
+        // render at the resolution of the screen, which may be scaled on high density displays
         Graphics2D graph = (Graphics2D) g;
-        graph.setRenderingHint(
-                RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON
-        );
-
-        // compute the scale factor to fit the tour in the panel (not to scale)
-        ScaleFactor scaleFactor = computeScaleFactor();
-
-        int[] order = tour.tour();
-        // Draw cities first, since we might add path animations later on
-        for (int i = 0; i < order.length; ++i) {
-            int[] coords = getCityCoordinates(order[i], scaleFactor);
-            graph.setColor(i == 0 ? Color.RED : Color.BLACK);
-            graph.drawRect(coords[0] - 1, coords[1] - 1, 3, 3);
+        double scale = graph.getTransform().getScaleX();
+        int width = (int) Math.ceil(getWidth() * scale);
+        int height = (int) Math.ceil(getHeight() * scale);
+        if (width <= 0 || height <= 0) {
+            return;
         }
 
-        // Continue by drawing the computed tour as lines between the cities
-        graph.setColor(new Color(0, 0, 0, 0.5f));
-        for (int i = 0; i < order.length; ++i) {
-            int[] coords1 = getCityCoordinates(order[i], scaleFactor);
-            int[] coords2 = getCityCoordinates(order[(i + 1) % order.length], scaleFactor);
-            graph.drawLine(coords1[0], coords1[1], coords2[0], coords2[1]);
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = render(width, height, scale);
         }
-
-        graph.setColor(Color.BLACK);
+        graph.drawImage(image, 0, 0, getWidth(), getHeight(), null);
     }
 
     /**
-     * Compute the coordinates of a city in the panel.
-     * @param city City index
-     * @param scaleFactor Scale factor to apply
-     * @return Coordinates of the city in the panel scaled to fit the panel
+     * Renders the tour into a new image, over the background of the panel.
+     * @param width Width of the image, in pixels
+     * @param height Height of the image, in pixels
+     * @param scale Number of pixels per unit of the panel
+     * @return Rendered tour
      */
-    private int[] getCityCoordinates(int city, ScaleFactor scaleFactor) {
-        return new int[]{
-                (int) Math.floor(
-                        (tour.data().getXCoordinateForCity(city) - scaleFactor.minX())
-                                * scaleFactor.scaleX()
-                                + BORDER
-                ),
-                (int) Math.floor(
-                        (tour.data().getYCoordinateForCity(city) - scaleFactor.minY())
-                                * scaleFactor.scaleY()
-                                + BORDER
-                ),
-        };
-    }
-
-    /**
-     * @return The scale factor to apply to the tour to fit it in the panel
-     */
-    private ScaleFactor computeScaleFactor() {
-        int minX = Integer.MAX_VALUE;
-        int minY = Integer.MAX_VALUE;
-        int maxX = 0;
-        int maxY = 0;
-        for (int i = 0; i < tour.data().getNumberOfCities(); ++i) {
-            int x = tour.data().getXCoordinateForCity(i);
-            int y = tour.data().getYCoordinateForCity(i);
-            if (maxX < x) {
-                maxX = x;
+    private BufferedImage render(int width, int height, double scale) {
+        int count = project(width, height, scale);
+        boolean detailed = count <= DETAILED_POINTS;
+        int marker = (int) Math.round(3 * scale);
+
+        var rendered = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graph = rendered.createGraphics();
+        try {
+            graph.setColor(getBackground());
+            graph.fillRect(0, 0, width, height);
+
+            if (detailed) {
+                // boilerplate code to enable anti-aliasing
+                graph.setRenderingHint(
+                        RenderingHints.KEY_ANTIALIASING,
+                        RenderingHints.VALUE_ANTIALIAS_ON
+                );
+
+                // Draw cities first, so that the tour is drawn over them
+                graph.setColor(Color.BLACK);
+                for (int i = 1; i < count; ++i) {
+                    graph.drawRect(xs[i] - marker / 2, ys[i] - marker / 2, marker, marker);
+                }
             }
 
-            if (minX > x) {
-                minX = x;
+            // Continue by drawing the computed tour, closed by the extra point
+            if (detailed) {
+                // anti-aliased polylines are slower than their lines drawn one by one, because of the joins
+                graph.setColor(LINE_COLOR);
+                for (int i = 0; i < count; ++i) {
+                    graph.drawLine(xs[i], ys[i], xs[i + 1], ys[i + 1]);
+                }
+            } else {
+                graph.setColor(OPAQUE_LINE_COLOR);
+                for (int from = 0; from < count; from += POLYLINE_CHUNK) {
+                    int points = Math.min(POLYLINE_CHUNK, count - from) + 1;
+                    System.arraycopy(xs, from, chunkXs, 0, points);
+                    System.arraycopy(ys, from, chunkYs, 0, points);
+                    graph.drawPolyline(chunkXs, chunkYs, points);
+                }
             }
 
-            if (maxY < y) {
-                maxY = y;
-            }
+            // the start city is always marked
+            graph.setColor(Color.RED);
+            graph.drawRect(xs[0] - marker / 2, ys[0] - marker / 2, marker, marker);
+        } finally {
+            graph.dispose();
+        }
+        return rendered;
+    }
 
-            if (minY > y) {
-                minY = y;
-            }
+    /**
+     * Projects the cities of the tour into {@link #xs} and {@link #ys}, in
+     * tour order, skipping the cities which fall in the same pixel as the
+     * previous one, and repeats the first point after the last one.
+     * @return Number of projected points, the repeated one excluded
+     */
+    private int project(int width, int height, double scale) {
+        int n = tour.size();
+        if (xs.length < n + 1) {
+            xs = new int[n + 1];
+            ys = new int[n + 1];
         }
 
-        return new ScaleFactor(
-                minX,
-                minY,
-                (double) (getWidth() - 2 * BORDER) / (maxX - minX),
-                (double) (getHeight() - 2 * BORDER) / (maxY - minY)
-        );
+        // the tour is not drawn to scale, but stretched to fill the panel
+        TspData data = tour.data();
+        double border = BORDER * scale;
+        double scaleX = (width - 2 * border) / Math.max(1, bounds.maxX() - bounds.minX());
+        double scaleY = (height - 2 * border) / Math.max(1, bounds.maxY() - bounds.minY());
+
+        int count = 0;
+        int lastX = Integer.MIN_VALUE;
+        int lastY = Integer.MIN_VALUE;
+        for (int i = 0; i < n; ++i) {
+            int city = tour.cityAt(i);
+            int x = (int) Math.floor((data.getXCoordinateForCity(city) - bounds.minX()) * scaleX + border);
+            int y = (int) Math.floor((data.getYCoordinateForCity(city) - bounds.minY()) * scaleY + border);
+            if (x != lastX || y != lastY) {
+                xs[count] = x;
+                ys[count] = y;
+                count++;
+                lastX = x;
+                lastY = y;
+            }
+        }
+        xs[count] = xs[0];
+        ys[count] = ys[0];
+        return count;
     }
 
     /**
-     * Represents a scale factor to apply to a tour to fit it in the panel.
-     * @param minX Minimum X coordinate of the tour
-     * @param minY Minimum Y coordinate of the tour
-     * @param scaleX Scale factor to apply on the X axis
-     * @param scaleY Scale factor to apply on the Y axis
+     * Represents the bounding box of the cities of an instance.
+     * @param minX Minimum X coordinate of the cities
+     * @param minY Minimum Y coordinate of the cities
+     * @param maxX Maximum X coordinate of the cities
+     * @param maxY Maximum Y coordinate of the cities
      */
-    private record ScaleFactor(int minX, int minY, double scaleX, double scaleY) {
+    private record Bounds(int minX, int minY, int maxX, int maxY) {
+
+        /**
+         * @return The bounding box of every city of the instance
+         */
+        static Bounds of(TspData data) {
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < data.getNumberOfCities(); ++i) {
+                int x = data.getXCoordinateForCity(i);
+                int y = data.getYCoordinateForCity(i);
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+            return new Bounds(minX, minY, maxX, maxY);
+        }
     }
 }
@@ -1,9 +1,16 @@
 package sio.groupK.gui;
 
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.swing.*;
 import sio.groupK.gui.model.TspDataSource;
 import sio.groupK.gui.model.TspHeuristic;
-import sio.tsp.TspData;
+import sio.groupK.gui.model.TspInstanceCache;
+import sio.tsp.TspInstrumentation;
+import sio.tsp.TspTour;
 
 /**
  * Main application and frame for the TSP visualiser.
@@ -18,6 +25,18 @@ public class TspApplication extends JFrame {
     private JLabel tourLengthLabel;
     private TourPanel tourPanel;
 
+    // instances and tours are kept, so that moving the slider back and forth does not recompute them
+    private final TspInstanceCache cache = new TspInstanceCache();
+
+    // tours are computed one at a time away from the event dispatch thread, a new request cancelling the previous one
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "tour-computation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> computation;
+    private long requests;
+
     public TspApplication() {
         super("TSP Visualiser");
         setContentPane(contentPane);
@@ -38,29 +57,73 @@ public class TspApplication extends JFrame {
     }
 
     /**
-     * Compute the tour and update the panel.
+     * Compute the tour in the background, cancelling the one in progress,
+     * and update the panel once done. Called on the event dispatch thread.
      */
     private void computeTour() {
-        try {
-            var tourData = TspData.fromFile(((TspDataSource) data.getSelectedItem()).path());
-            startIndex.setMaximum(tourData.getNumberOfCities() - 1);
-
-            var tour = ((TspHeuristic) heuristic.getSelectedItem())
-                    .getHeuristicInstance()
-                    .computeTour(
-                            tourData,
-                            startIndex.getValue()
-                    );
-            tourPanel.setTour(tour);
-            tourLengthLabel.setText("Tour length: %d".formatted(tour.length()));
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(
-                    this,
-                    e.getMessage(),
-                    "An error occurred while loading data",
-                    JOptionPane.ERROR_MESSAGE
-            );
+        if (computation != null) {
+            computation.cancel(true);
         }
+
+        long request = ++requests;
+        var source = (TspDataSource) data.getSelectedItem();
+        var selectedHeuristic = (TspHeuristic) heuristic.getSelectedItem();
+        int selectedStart = startIndex.getValue();
+
+        computation = executor.submit(() -> {
+            try {
+                var tourData = cache.load(Path.of(source.path()));
+                // the slider may still allow the cities of a larger dataset
+                int startCity = Math.min(selectedStart, tourData.getNumberOfCities() - 1);
+
+                var tour = cache.findTour(tourData, selectedHeuristic, startCity);
+                if (tour != null) {
+                    publish(request, tour, "Tour length: %d (cached)".formatted(tour.length()));
+                    return;
+                }
+
+                long start = System.nanoTime();
+                tour = TspInstrumentation.computeTour(
+                        selectedHeuristic.getHeuristicInstance(),
+                        tourData,
+                        startCity
+                );
+                long elapsed = System.nanoTime() - start;
+                cache.addTour(tourData, selectedHeuristic, startCity, tour);
+                publish(request, tour, "Tour length: %d (computed in %.2f ms)".formatted(
+                        tour.length(),
+                        elapsed / 1_000_000.0
+                ));
+            } catch (CancellationException e) {
+                // a newer request replaced this one
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (request == requests) {
+                        JOptionPane.showMessageDialog(
+                                this,
+                                e.getMessage(),
+                                "An error occurred while loading data",
+                                JOptionPane.ERROR_MESSAGE
+                        );
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Shows a computed tour, unless a newer request was made meanwhile.
+     */
+    private void publish(long request, TspTour tour, String label) {
+        SwingUtilities.invokeLater(() -> {
+            if (request != requests) {
+                return;
+            }
+            tourPanel.setTour(tour);
+            tourLengthLabel.setText(label);
+            // may move the slider back within the cities, which requests the clamped start city again
+            startIndex.setMaximum(tour.data().getNumberOfCities() - 1);
+        });
     }
 
     private void createUIComponents() {
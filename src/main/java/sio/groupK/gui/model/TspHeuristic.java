@@ -1,7 +1,15 @@
 package sio.groupK.gui.model;
 
+import sio.groupK.CheapestInsertion;
 import sio.groupK.DoubleEndsNearestNeighbor;
+import sio.groupK.FarthestInsertion;
+import sio.groupK.GreedyEdge;
+import sio.groupK.HilbertCurve;
+import sio.groupK.IteratedLocalSearch;
+import sio.groupK.LinKernighan;
+import sio.groupK.NearestInsertion;
 import sio.groupK.NearestNeighbor;
+import sio.groupK.TwoOptOrOpt;
 import sio.tsp.TspConstructiveHeuristic;
 
 /**
@@ -19,6 +27,66 @@ public enum TspHeuristic {
         public TspConstructiveHeuristic getHeuristicInstance() {
             return new DoubleEndsNearestNeighbor();
         }
+    },
+    HILBERT {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return new HilbertCurve();
+        }
+    },
+    GREEDY {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return new GreedyEdge();
+        }
+    },
+    NEAREST_INSERTION {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return new NearestInsertion();
+        }
+    },
+    FARTHEST_INSERTION {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return new FarthestInsertion();
+        }
+    },
+    CHEAPEST_INSERTION {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return new CheapestInsertion();
+        }
+    },
+    NN_2OPT {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return NN.getHeuristicInstance().andThen(new TwoOptOrOpt());
+        }
+    },
+    DENN_2OPT {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return DENN.getHeuristicInstance().andThen(new TwoOptOrOpt());
+        }
+    },
+    NN_LK {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return NN.getHeuristicInstance().andThen(new LinKernighan());
+        }
+    },
+    DENN_LK {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return DENN.getHeuristicInstance().andThen(new LinKernighan());
+        }
+    },
+    NN_ILS {
+        @Override
+        public TspConstructiveHeuristic getHeuristicInstance() {
+            return NN.getHeuristicInstance().andThen(new IteratedLocalSearch());
+        }
     };
 
     /**
@@ -0,0 +1,178 @@
+package sio.groupK.gui.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import sio.tsp.TspData;
+import sio.tsp.TspDistanceStorage;
+import sio.tsp.TspParsingException;
+import sio.tsp.TspTour;
+
+/**
+ * Cache of the instances loaded by the visualiser, and of the tours computed
+ * on them.
+ *
+ * <p>Instances are keyed by their path and reloaded when the file is
+ * modified. Both instances and tours are evicted least recently used first,
+ * once their estimated memory exceeds the budget given at creation, the
+ * tours of an instance being dropped along with it. The most recent entry
+ * is always kept, even if it exceeds the budget on its own.</p>
+ *
+ * <p>Methods are synchronised, so that the cache can be shared between
+ * threads.</p>
+ *
+ * @author Loïc Herman
+ */
+public final class TspInstanceCache {
+
+    // estimated heap used by a tour besides its cities: tour object and array header
+    private static final long TOUR_OVERHEAD_BYTES = 48;
+
+    private final long instanceBudget;
+    private final long tourBudget;
+    private final LinkedHashMap<Path, Instance> instances = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<TourKey, TspTour> tours = new LinkedHashMap<>(16, 0.75f, true);
+    private long instanceBytes;
+    private long tourBytes;
+
+    /**
+     * Creates a cache holding instances within the default distance memory
+     * budget, see {@link TspDistanceStorage#defaultMemoryBudget()}, and tours
+     * within a quarter of it.
+     */
+    public TspInstanceCache() {
+        this(TspDistanceStorage.defaultMemoryBudget(), TspDistanceStorage.defaultMemoryBudget() / 4);
+    }
+
+    /**
+     * @param instanceBudget estimated memory the instances may use, in bytes
+     * @param tourBudget estimated memory the tours may use, in bytes
+     */
+    public TspInstanceCache(long instanceBudget, long tourBudget) {
+        if (instanceBudget < 0 || tourBudget < 0) {
+            throw new IllegalArgumentException("budgets must not be negative");
+        }
+        this.instanceBudget = instanceBudget;
+        this.tourBudget = tourBudget;
+    }
+
+    /**
+     * Returns the instance stored in a file, loading it if it is not cached
+     * or if the file was modified since it was loaded.
+     * @param path data file
+     * @return loaded instance
+     * @throws IOException if the file can't be read
+     * @throws TspParsingException if the file content is malformed
+     */
+    public synchronized TspData load(Path path) throws IOException, TspParsingException {
+        var key = path.toAbsolutePath().normalize();
+        long modified = Files.getLastModifiedTime(key).toMillis();
+
+        var cached = instances.get(key);
+        if (cached != null) {
+            if (cached.modified() == modified) {
+                return cached.data();
+            }
+            remove(key);
+        }
+
+        var data = TspData.fromFile(key.toString());
+        var instance = new Instance(data, modified, data.getMemoryFootprint());
+        instances.put(key, instance);
+        instanceBytes += instance.bytes();
+
+        // the loaded instance is the most recent one, and is never evicted here
+        while (instanceBytes > instanceBudget && instances.size() > 1) {
+            remove(instances.keySet().iterator().next());
+        }
+        return data;
+    }
+
+    /**
+     * Returns a tour computed earlier on a cached instance.
+     * @param data instance returned by {@link #load(Path)}
+     * @param heuristic heuristic which computed the tour
+     * @param startCity start city of the tour
+     * @return cached tour, or null if there is none
+     */
+    public synchronized TspTour findTour(TspData data, TspHeuristic heuristic, int startCity) {
+        return tours.get(new TourKey(data, heuristic, startCity));
+    }
+
+    /**
+     * Caches a tour computed on a cached instance. Tours of instances which
+     * are not cached anymore are ignored.
+     * @param data instance returned by {@link #load(Path)}
+     * @param heuristic heuristic which computed the tour
+     * @param startCity start city of the tour
+     * @param tour computed tour
+     */
+    public synchronized void addTour(TspData data, TspHeuristic heuristic, int startCity, TspTour tour) {
+        if (instances.values().stream().noneMatch(instance -> instance.data() == data)) {
+            return;
+        }
+
+        var key = new TourKey(data, heuristic, startCity);
+        if (tours.put(key, tour) == null) {
+            tourBytes += tourBytes(tour);
+        }
+
+        var eldest = tours.entrySet().iterator();
+        while (tourBytes > tourBudget && tours.size() > 1) {
+            tourBytes -= tourBytes(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return number of cached instances
+     */
+    public synchronized int instanceCount() {
+        return instances.size();
+    }
+
+    /**
+     * @return number of cached tours
+     */
+    public synchronized int tourCount() {
+        return tours.size();
+    }
+
+    /**
+     * Removes an instance and its tours.
+     */
+    private void remove(Path key) {
+        var instance = instances.remove(key);
+        instanceBytes -= instance.bytes();
+
+        var entries = tours.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<TourKey, TspTour> entry = entries.next();
+            if (entry.getKey().data() == instance.data()) {
+                tourBytes -= tourBytes(entry.getValue());
+                entries.remove();
+            }
+        }
+    }
+
+    private static long tourBytes(TspTour tour) {
+        return TOUR_OVERHEAD_BYTES + 4L * tour.size();
+    }
+
+    /**
+     * Cached instance.
+     * @param data loaded instance
+     * @param modified modification time of the file when it was loaded
+     * @param bytes estimated memory used by the instance
+     */
+    private record Instance(TspData data, long modified, long bytes) {
+    }
+
+    /**
+     * Key of a cached tour, instances being compared by identity.
+     */
+    private record TourKey(TspData data, TspHeuristic heuristic, int startCity) {
+    }
+}
@@ -0,0 +1,82 @@
+package sio.tsp;
+
+/**
+ * Tour stored as the order of the cities and the position of every city, reversals swapping the cities of
+ * the shorter side of the cycle.
+ */
+final class ArrayTour extends TspMutableTour {
+  private final int n;
+  private final int[] order;
+  private final int[] position;
+
+  ArrayTour(final TspData data, final int[] order) {
+    super(data);
+    this.n = order.length;
+    this.order = order.clone();
+    this.position = new int[n];
+    for (int i = 0; i < n; i++) {
+      position[order[i]] = i;
+    }
+  }
+
+  @Override
+  public int next(int city) {
+    int i = position[city] + 1;
+    return order[i == n ? 0 : i];
+  }
+
+  @Override
+  public int prev(int city) {
+    int i = position[city];
+    return order[i == 0 ? n - 1 : i - 1];
+  }
+
+  @Override
+  public boolean between(int a, int b, int c) {
+    int pa = position[a];
+    int pb = position[b] - pa;
+    int pc = position[c] - pa;
+    return (pb < 0 ? pb + n : pb) <= (pc < 0 ? pc + n : pc);
+  }
+
+  @Override
+  public void reverse(int from, int to) {
+    int i = position[from];
+    int j = position[to];
+    int length = j - i;
+    if (length < 0) {
+      length += n;
+    }
+    length++;
+    if (2 * length > n) {
+      // the complementary path is shorter
+      int first = j + 1 == n ? 0 : j + 1;
+      j = i == 0 ? n - 1 : i - 1;
+      i = first;
+      length = n - length;
+    }
+
+    for (int s = length / 2; s > 0; s--) {
+      int ci = order[i];
+      int cj = order[j];
+      order[i] = cj;
+      position[cj] = i;
+      order[j] = ci;
+      position[ci] = j;
+      if (++i == n) {
+        i = 0;
+      }
+      if (--j < 0) {
+        j = n - 1;
+      }
+    }
+  }
+
+  @Override
+  public void copyTo(int startCity, int[] destination) {
+    // two copies of the order array around the start city
+    int first = position[startCity];
+    System.arraycopy(order, first, destination, 0, n - first);
+    System.arraycopy(order, 0, destination, n - first, first);
+  }
+}
@@ -0,0 +1,149 @@
+package sio.tsp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Reads the whitespace separated integers of a data file directly from its bytes.</p>
+ *
+ * <p>Files are memory-mapped when possible, other sources are read through a buffer. The methods mirror
+ * the ones of {@link java.util.Scanner} used to parse data files, and fail with the same exceptions.</p>
+ */
+final class DatParser implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ReadableByteChannel channel;
+  private final ByteBuffer buffer;
+  private boolean endOfInput;
+
+  private DatParser(final ReadableByteChannel channel, final ByteBuffer buffer, final boolean endOfInput) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.endOfInput = endOfInput;
+  }
+
+  /**
+   * Opens a file, mapping it in memory if it fits in a single buffer.
+   */
+  static DatParser open(final Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      if (size <= Integer.MAX_VALUE) {
+        return new DatParser(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), true);
+      }
+      return new DatParser(channel, ByteBuffer.allocateDirect(BUFFER_SIZE).flip(), false);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads from a stream, which is closed along with the parser.
+   */
+  static DatParser open(final InputStream stream) {
+    return new DatParser(Channels.newChannel(stream), ByteBuffer.allocate(BUFFER_SIZE).flip(), false);
+  }
+
+  /**
+   * Tells whether another token is available.
+   */
+  boolean hasNext() throws IOException {
+    return skipWhitespace();
+  }
+
+  /**
+   * Reads the next token as an int.
+   *
+   * @throws InputMismatchException If the token is not an int.
+   * @throws NoSuchElementException If there is no token left.
+   */
+  int nextInt() throws IOException {
+    if (!skipWhitespace()) {
+      throw new NoSuchElementException();
+    }
+
+    boolean negative = false;
+    byte first = buffer.get(buffer.position());
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      buffer.position(buffer.position() + 1);
+    }
+
+    // accumulate as a negative number, whose range is larger
+    long value = 0;
+    int digits = 0;
+    boolean valid = true;
+    while (ensureAvailable()) {
+      byte b = buffer.get(buffer.position());
+      if (isWhitespace(b)) {
+        break;
+      }
+
+      buffer.position(buffer.position() + 1);
+      if (b < '0' || b > '9' || value < Integer.MIN_VALUE) {
+        valid = false;
+      } else {
+        value = value * 10 - (b - '0');
+        digits++;
+      }
+    }
+
+    if (!valid || digits == 0 || (!negative && value == Integer.MIN_VALUE) || value < Integer.MIN_VALUE) {
+      throw new InputMismatchException();
+    }
+    return (int) (negative ? value : -value);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Skips whitespace, and tells whether a token follows.
+   */
+  private boolean skipWhitespace() throws IOException {
+    while (ensureAvailable()) {
+      if (!isWhitespace(buffer.get(buffer.position()))) {
+        return true;
+      }
+      buffer.position(buffer.position() + 1);
+    }
+    return false;
+  }
+
+  /**
+   * Makes sure at least one byte is available in the buffer, reading more if needed.
+   */
+  private boolean ensureAvailable() throws IOException {
+    while (!buffer.hasRemaining()) {
+      if (endOfInput) {
+        return false;
+      }
+
+      buffer.clear();
+      endOfInput = channel.read(buffer) < 0;
+      buffer.flip();
+    }
+    return true;
+  }
+
+  /**
+   * Whitespace as defined by {@link Character#isWhitespace(int)} for ASCII characters.
+   */
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1c && b <= 0x1f);
+  }
+}
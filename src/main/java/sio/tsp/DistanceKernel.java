@@ -0,0 +1,100 @@
+package sio.tsp;
+
+/**
+ * <p>Computes rows of rounded euclidean distances, and finds the smallest distance of a row.</p>
+ *
+ * <p>The instance in use relies on the incubating Vector API when the {@code jdk.incubator.vector} module is
+ * present (run with {@code --add-modules jdk.incubator.vector}), and on a scalar loop otherwise. Both return
+ * {@code (int) Math.round(Math.sqrt(dx * dx + dy * dy))}, which for integer coordinates is the same as
+ * rounding {@link Math#hypot}.</p>
+ */
+abstract class DistanceKernel {
+
+  /**
+   * Kernel used by the distance tables.
+   */
+  static final DistanceKernel INSTANCE = load();
+
+  /**
+   * Computes the distance between two cities.
+   */
+  static int distance(final int[] xs, final int[] ys, final int i, final int j) {
+    return distance(xs[i], ys[i], xs[j], ys[j]);
+  }
+
+  /**
+   * Computes the distance between two points.
+   */
+  static int distance(final int x1, final int y1, final int x2, final int y2) {
+    double dx = x1 - x2;
+    double dy = y1 - y2;
+    return (int) Math.round(Math.sqrt(dx * dx + dy * dy));
+  }
+
+  /**
+   * Writes the distances from city i to the cities in [from, to) at destination[offset...].
+   */
+  abstract void row(int[] xs, int[] ys, int i, int from, int to, int[] destination, int offset);
+
+  /**
+   * Returns the position of the smallest of the first count distances, the one of the lowest city on ties,
+   * or -1 if count is zero.
+   */
+  abstract int nearest(int[] distances, int[] cities, int count);
+
+  /**
+   * Returns true if this kernel uses vector instructions.
+   */
+  abstract boolean isVectorized();
+
+  /**
+   * Returns the position of the lowest city whose distance is the given minimum, among positions [from, to).
+   */
+  static int lowestCityAt(int[] distances, int[] cities, int from, int to, int min, int best) {
+    for (int k = from; k < to; k++) {
+      if (distances[k] == min && (best < 0 || cities[k] < cities[best])) {
+        best = k;
+      }
+    }
+    return best;
+  }
+
+  private static DistanceKernel load() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      try {
+        // loaded by name, so that the class is never linked without the module
+        return (DistanceKernel) Class.forName("sio.tsp.VectorDistanceKernel").getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // fall back to the scalar kernel
+      }
+    }
+    return new Scalar();
+  }
+
+  /**
+   * Plain loop, used when the Vector API is not available.
+   */
+  static final class Scalar extends DistanceKernel {
+    @Override
+    void row(int[] xs, int[] ys, int i, int from, int to, int[] destination, int offset) {
+      for (int j = from; j < to; j++) {
+        destination[offset++] = distance(xs, ys, i, j);
+      }
+    }
+
+    @Override
+    int nearest(int[] distances, int[] cities, int count) {
+      // a plain min-reduction first, which the JIT compiler vectorises, then the lowest city at that distance
+      int min = Integer.MAX_VALUE;
+      for (int k = 0; k < count; k++) {
+        min = Math.min(min, distances[k]);
+      }
+      return lowestCityAt(distances, cities, 0, count, min, -1);
+    }
+
+    @Override
+    boolean isVectorized() {
+      return false;
+    }
+  }
+}
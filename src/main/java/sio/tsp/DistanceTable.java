@@ -0,0 +1,314 @@
+package sio.tsp;
+
+import java.nio.IntBuffer;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * <p>Storage of the distances between the cities of an instance.</p>
+ *
+ * <p>Implementations do not check their arguments, {@link TspData} is responsible for it.</p>
+ */
+abstract class DistanceTable {
+
+  protected final int[] xs;
+  protected final int[] ys;
+
+  DistanceTable(final int[] xs, final int[] ys) {
+    this.xs = xs;
+    this.ys = ys;
+  }
+
+  /**
+   * Returns the distance between two cities.
+   */
+  abstract int get(int i, int j);
+
+  /**
+   * Copies the distances from city i to every city into the destination.
+   */
+  void row(int i, int[] destination) {
+    for (int j = 0; j < xs.length; j++) {
+      destination[j] = get(i, j);
+    }
+  }
+
+  /**
+   * Copies the distances from city i to the first count cities of the array into the destination.
+   */
+  void gather(int i, int[] cities, int count, int[] destination) {
+    for (int k = 0; k < count; k++) {
+      destination[k] = get(i, cities[k]);
+    }
+  }
+
+  /**
+   * Returns the storage strategy implemented by this table.
+   */
+  abstract TspDistanceStorage storage();
+
+  /**
+   * Returns the heap memory used by this table, in bytes, at most the footprint of its strategy.
+   */
+  long footprint() {
+    return storage().requiredBytes(xs.length);
+  }
+
+  /**
+   * Computes the rounded euclidean distance between two cities.
+   */
+  final int compute(int i, int j) {
+    if (TspInstrumentation.ENABLED) {
+      TspInstrumentation.countComputations(1);
+    }
+    return DistanceKernel.distance(xs, ys, i, j);
+  }
+
+  /**
+   * Full square matrix.
+   */
+  static final class Matrix extends DistanceTable {
+    private final int[][] matrix;
+
+    Matrix(final int[] xs, final int[] ys) {
+      super(xs, ys);
+      int n = xs.length;
+      matrix = new int[n][];
+
+      // every row is computed in full, so that rows are independent and can be filled in parallel
+      IntStream.range(0, n).parallel().forEach(i -> {
+        int[] row = new int[n];
+        DistanceKernel.INSTANCE.row(xs, ys, i, 0, n, row, 0);
+        matrix[i] = row;
+      });
+    }
+
+    @Override
+    int get(int i, int j) {
+      return matrix[i][j];
+    }
+
+    @Override
+    void row(int i, int[] destination) {
+      System.arraycopy(matrix[i], 0, destination, 0, matrix.length);
+    }
+
+    @Override
+    void gather(int i, int[] cities, int count, int[] destination) {
+      int[] row = matrix[i];
+      for (int k = 0; k < count; k++) {
+        destination[k] = row[cities[k]];
+      }
+    }
+
+    @Override
+    TspDistanceStorage storage() {
+      return TspDistanceStorage.MATRIX;
+    }
+  }
+
+  /**
+   * Lower triangle without the diagonal, row after row: distance (i, j) with j &lt; i is stored at
+   * i * (i - 1) / 2 + j.
+   */
+  static final class Triangular extends DistanceTable {
+    private final int[] triangle;
+
+    Triangular(final int[] xs, final int[] ys) {
+      super(xs, ys);
+      triangle = new int[(int) size(xs.length)];
+      IntStream.range(1, xs.length).parallel()
+            .forEach(i -> DistanceKernel.INSTANCE.row(xs, ys, i, 0, i, triangle, offset(i)));
+    }
+
+    static long size(int numberOfCities) {
+      return (long) numberOfCities * (numberOfCities - 1) / 2;
+    }
+
+    static int offset(int row) {
+      return (int) (((long) row * (row - 1)) >>> 1);
+    }
+
+    @Override
+    int get(int i, int j) {
+      if (i == j) {
+        return 0;
+      }
+      return i > j ? triangle[offset(i) + j] : triangle[offset(j) + i];
+    }
+
+    @Override
+    void row(int i, int[] destination) {
+      // the first half of the row is contiguous, the second one is spread over the next rows
+      System.arraycopy(triangle, offset(i), destination, 0, i);
+      destination[i] = 0;
+      for (int j = i + 1; j < xs.length; j++) {
+        destination[j] = triangle[offset(j) + i];
+      }
+    }
+
+    @Override
+    void gather(int i, int[] cities, int count, int[] destination) {
+      // negative indices could land inside the triangle, so they are checked explicitly
+      for (int k = 0; k < count; k++) {
+        destination[k] = get(i, Objects.checkIndex(cities[k], xs.length));
+      }
+    }
+
+    @Override
+    TspDistanceStorage storage() {
+      return TspDistanceStorage.TRIANGULAR;
+    }
+  }
+
+  /**
+   * Same layout as {@link Triangular}, read in place from a memory-mapped snapshot. It is reported as the
+   * triangular strategy, which can't be chosen to create it.
+   */
+  static final class Mapped extends DistanceTable {
+    private final IntBuffer triangle;
+
+    Mapped(final int[] xs, final int[] ys, final IntBuffer triangle) {
+      super(xs, ys);
+      this.triangle = triangle;
+    }
+
+    @Override
+    int get(int i, int j) {
+      if (i == j) {
+        return 0;
+      }
+      return i > j ? triangle.get(Triangular.offset(i) + j) : triangle.get(Triangular.offset(j) + i);
+    }
+
+    @Override
+    void row(int i, int[] destination) {
+      triangle.get(Triangular.offset(i), destination, 0, i);
+      destination[i] = 0;
+      for (int j = i + 1; j < xs.length; j++) {
+        destination[j] = triangle.get(Triangular.offset(j) + i);
+      }
+    }
+
+    @Override
+    void gather(int i, int[] cities, int count, int[] destination) {
+      // negative indices could land inside the triangle, so they are checked explicitly
+      for (int k = 0; k < count; k++) {
+        destination[k] = get(i, Objects.checkIndex(cities[k], xs.length));
+      }
+    }
+
+    @Override
+    TspDistanceStorage storage() {
+      return TspDistanceStorage.TRIANGULAR;
+    }
+
+    @Override
+    long footprint() {
+      // the triangle is mapped outside of the heap
+      return 0;
+    }
+  }
+
+  /**
+   * Direct-mapped cache of rows, each row being computed on its first bulk access. Single distances missing
+   * from the cache are computed without being cached.
+   */
+  static final class RowCache extends DistanceTable {
+    // Rows are immutable once published, so that racing threads at worst compute the same row twice
+    private final Row[] rows;
+    private final int mask;
+
+    /**
+     * Creates a cache holding every row if the capacity allows it, or else the largest power of two of rows
+     * not exceeding the capacity.
+     */
+    RowCache(final int[] xs, final int[] ys, final int capacity) {
+      super(xs, ys);
+      int slots = capacity >= xs.length
+            ? Integer.highestOneBit(xs.length - 1) << 1
+            : Integer.highestOneBit(capacity);
+      rows = new Row[slots];
+      mask = rows.length - 1;
+    }
+
+    @Override
+    int get(int i, int j) {
+      Row row = rows[i & mask];
+      if (row != null && row.city == i) {
+        return row.distances[j];
+      }
+
+      row = rows[j & mask];
+      if (row != null && row.city == j) {
+        return row.distances[i];
+      }
+      // loading a whole row for a single distance would make random accesses linear
+      return compute(i, j);
+    }
+
+    @Override
+    void row(int i, int[] destination) {
+      System.arraycopy(load(i), 0, destination, 0, xs.length);
+    }
+
+    @Override
+    void gather(int i, int[] cities, int count, int[] destination) {
+      int[] row = load(i);
+      for (int k = 0; k < count; k++) {
+        destination[k] = row[cities[k]];
+      }
+    }
+
+    /**
+     * Returns the row of city i, computing it if it is not in the cache.
+     */
+    private int[] load(int i) {
+      Row row = rows[i & mask];
+      if (row != null && row.city == i) {
+        return row.distances;
+      }
+
+      int[] distances = new int[xs.length];
+      if (TspInstrumentation.ENABLED) {
+        TspInstrumentation.countComputations(xs.length);
+      }
+      DistanceKernel.INSTANCE.row(xs, ys, i, 0, xs.length, distances, 0);
+      rows[i & mask] = new Row(i, distances);
+      return distances;
+    }
+
+    @Override
+    TspDistanceStorage storage() {
+      return TspDistanceStorage.ROW_CACHE;
+    }
+
+    @Override
+    long footprint() {
+      // counted as if every slot held a row, there are at most as many rows as cities
+      return Math.min(rows.length, xs.length) * (16 + 4L * xs.length);
+    }
+
+    private record Row(int city, int[] distances) {
+    }
+  }
+
+  /**
+   * No storage at all.
+   */
+  static final class Computed extends DistanceTable {
+    Computed(final int[] xs, final int[] ys) {
+      super(xs, ys);
+    }
+
+    @Override
+    int get(int i, int j) {
+      return compute(i, j);
+    }
+
+    @Override
+    TspDistanceStorage storage() {
+      return TspDistanceStorage.ON_THE_FLY;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package sio.tsp;
+
+/**
+ * Workspace of a heuristic without buffers of its own, keeping the last tour it returned.
+ */
+final class TourWorkspace implements TspWorkspace {
+  private final TspConstructiveHeuristic heuristic;
+  private final TspData data;
+  private TspTour tour;
+
+  TourWorkspace(final TspConstructiveHeuristic heuristic, final TspData data) {
+    this.heuristic = heuristic;
+    this.data = data;
+  }
+
+  @Override
+  public TspData data() {
+    return data;
+  }
+
+  @Override
+  public long computeTour(int startCityIndex) {
+    tour = heuristic.computeTour(data, startCityIndex);
+    return tour.length();
+  }
+
+  @Override
+  public int cityAt(int position) {
+    return current().cityAt(position);
+  }
+
+  @Override
+  public TspTour toTour() {
+    // tours are immutable, no copy is needed
+    return current();
+  }
+
+  private TspTour current() {
+    if (tour == null) {
+      throw new IllegalStateException("No tour computed yet.");
+    }
+    return tour;
+  }
+}
@@ -0,0 +1,202 @@
+package sio.tsp;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+
+/**
+ * <p>Lists of candidate neighbours of every city of an instance, the cities that local search moves try to
+ * connect it to.</p>
+ *
+ * <p>Lists have the same length for every city and are stored one after the other in a single array, each
+ * one sorted by increasing distance, ties being broken on the lowest city index. They are built with a
+ * {@link TspSpatialIndex} in O(n k log n), and obtained through {@link TspData#getCandidates(int, Mode)},
+ * which caches them.</p>
+ *
+ * <p>Instances are immutable.</p>
+ */
+public final class TspCandidates {
+
+  /**
+   * How candidates are chosen.
+   */
+  public enum Mode {
+    /**
+     * The k nearest cities.
+     */
+    NEAREST,
+
+    /**
+     * The k / 4 nearest cities in each of the four quadrants around the city, completed with the nearest
+     * remaining cities when a quadrant holds fewer cities. Unlike {@link #NEAREST}, it keeps candidates in
+     * every direction in clustered instances.
+     */
+    QUADRANT
+  }
+
+  private final Mode mode;
+  private final int count;
+  private final int[] candidates;
+
+  private TspCandidates(final Mode mode, final int count, final int[] candidates) {
+    this.mode = mode;
+    this.count = count;
+    this.candidates = candidates;
+  }
+
+  /**
+   * Builds the candidate lists of an instance.
+   *
+   * @param data Data of problem instance.
+   * @param k Requested number of candidates per city, reduced to the number of other cities if larger.
+   * @param mode How candidates are chosen.
+   */
+  static TspCandidates build(final TspData data, final int k, final Mode mode) {
+    Objects.requireNonNull(mode, "mode must not be null");
+    if (k < 1) {
+      throw new IllegalArgumentException("Number of candidates must be positive.");
+    }
+
+    int n = data.getNumberOfCities();
+    int count = Math.min(k, n - 1);
+    if ((long) n * count > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many candidates for a single array.");
+    }
+
+    int[] candidates = new int[n * count];
+    var index = new TspSpatialIndex(data);
+    if (mode == Mode.NEAREST) {
+      int[] row = new int[count];
+      for (int city = 0; city < n; city++) {
+        checkInterrupted();
+        index.nearest(city, count, row);
+        System.arraycopy(row, 0, candidates, city * count, count);
+      }
+    } else {
+      buildQuadrants(data, index, count, candidates);
+    }
+    return new TspCandidates(mode, count, candidates);
+  }
+
+  /**
+   * Aborts the build if the current thread is interrupted, so that cancelled tours do not wait for the lists.
+   */
+  private static void checkInterrupted() {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("candidate lists interrupted");
+    }
+  }
+
+  private static void buildQuadrants(final TspData data, final TspSpatialIndex index, final int count,
+                                     final int[] candidates) {
+    int n = data.getNumberOfCities();
+    int perQuadrant = count / 4;
+    int[] found = new int[count];
+    int[] row = new int[count];
+    int[] distances = new int[count];
+    // cities already in the row of the city whose index is stored
+    int[] selectedFor = new int[n];
+    Arrays.fill(selectedFor, -1);
+
+    for (int city = 0; city < n; city++) {
+      checkInterrupted();
+      int size = 0;
+      for (int quadrant = 0; quadrant < 4 && perQuadrant > 0; quadrant++) {
+        int m = index.nearestInQuadrant(city, quadrant, perQuadrant, found);
+        for (int i = 0; i < m; i++) {
+          row[size++] = found[i];
+          selectedFor[found[i]] = city;
+        }
+      }
+
+      // complete with the nearest cities, which are in the same order as in the final row
+      if (size < count) {
+        int m = index.nearest(city, count, found);
+        for (int i = 0; i < m && size < count; i++) {
+          if (selectedFor[found[i]] != city) {
+            row[size++] = found[i];
+            selectedFor[found[i]] = city;
+          }
+        }
+      }
+
+      // sort by distance then index, rows are short enough for an insertion sort. Distances are computed from
+      // the coordinates, as reading them from a partial storage could compute whole rows
+      int x = data.getXCoordinateForCity(city);
+      int y = data.getYCoordinateForCity(city);
+      for (int i = 0; i < count; i++) {
+        distances[i] = DistanceKernel.distance(x, y, data.getXCoordinateForCity(row[i]),
+              data.getYCoordinateForCity(row[i]));
+      }
+      for (int i = 1; i < count; i++) {
+        int c = row[i];
+        int d = distances[i];
+        int j = i - 1;
+        while (j >= 0 && (distances[j] > d || (distances[j] == d && row[j] > c))) {
+          row[j + 1] = row[j];
+          distances[j + 1] = distances[j];
+          j--;
+        }
+        row[j + 1] = c;
+        distances[j + 1] = d;
+      }
+      System.arraycopy(row, 0, candidates, city * count, count);
+    }
+  }
+
+  /**
+   * Returns how candidates were chosen.
+   *
+   * @return Candidate mode.
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Returns the number of candidates of every city.
+   *
+   * @return Number of candidates per city.
+   */
+  public int getNumberOfCandidates() {
+    return count;
+  }
+
+  /**
+   * Returns a candidate of a city.
+   *
+   * @param city City index.
+   * @param rank Rank of the candidate, 0 being the nearest.
+   * @return Index of the candidate city.
+   * @throws IndexOutOfBoundsException If city or rank are out of bounds.
+   */
+  public int getCandidate(int city, int rank) {
+    // Check for out of bounds rank, the array access checks the city
+    if (rank < 0 || rank >= count || city < 0) {
+      throw new IndexOutOfBoundsException("Candidate index out of bounds.");
+    }
+
+    return candidates[city * count + rank];
+  }
+
+  /**
+   * Copies the candidates of a city into the destination, nearest first.
+   *
+   * @param city City index.
+   * @param destination Array receiving the candidates, of length at least {@link #getNumberOfCandidates()}.
+   * @throws IndexOutOfBoundsException If city is out of bounds or destination is too short.
+   */
+  public void getCandidates(int city, int[] destination) {
+    System.arraycopy(candidates, Objects.checkIndex(city, candidates.length / count) * count, destination, 0, count);
+  }
+
+  /**
+   * Returns a copy of every list, the candidates of city i being stored from index {@code i * k}, where k is
+   * {@link #getNumberOfCandidates()}.
+   *
+   * @return Flat array of candidates.
+   */
+  public int[] toArray() {
+    return candidates.clone();
+  }
+}
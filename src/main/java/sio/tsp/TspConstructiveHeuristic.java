@@ -1,5 +1,7 @@
 package sio.tsp;
 
+import java.util.Objects;
+
 /**
  * Constructive heuristic for the TSP
  */
@@ -10,6 +12,9 @@ public interface TspConstructiveHeuristic {
 	 *
 	 * <p>No guarantee is given as to the optimality of the resulting tour.</p>
 	 *
+	 * <p>Implementations may check the interrupted status of the current thread while computing the tour,
+	 * and abort by throwing a {@link java.util.concurrent.CancellationException} if it is set.</p>
+	 *
 	 * @param data Data of problem instance
 	 * @param startCityIndex Index of starting city, if needed by the implementation
 	 *
@@ -18,4 +23,33 @@ public interface TspConstructiveHeuristic {
 	 * @throws IllegalArgumentException if {@code startCityIndex} is not usable by the implementation
 	 */
 	TspTour computeTour(TspData data, int startCityIndex);
+
+	/**
+	 * <p>Creates a workspace computing tours with this heuristic on the given data.</p>
+	 *
+	 * <p>Heuristics may override this method to reuse their buffers from one tour to the next. By default,
+	 * the workspace calls {@link #computeTour(TspData, int)} and keeps the tour it returns.</p>
+	 *
+	 * @param data Data of problem instance
+	 *
+	 * @return New workspace, to be used by a single thread
+	 * @throws NullPointerException if {@code data} is null
+	 */
+	default TspWorkspace newWorkspace(TspData data) {
+		Objects.requireNonNull(data, "data must not be null");
+		return new TourWorkspace(this, data);
+	}
+
+	/**
+	 * Returns a heuristic computing a tour with this heuristic, then improving it.
+	 *
+	 * @param improvement Improvement applied to every tour
+	 *
+	 * @return Heuristic chaining this heuristic and the improvement
+	 * @throws NullPointerException if {@code improvement} is null
+	 */
+	default TspConstructiveHeuristic andThen(TspTourImprovement improvement) {
+		Objects.requireNonNull(improvement, "improvement must not be null");
+		return (data, startCityIndex) -> TspInstrumentation.improve(improvement, computeTour(data, startCityIndex));
+	}
 }
@@ -1,9 +1,15 @@
 package sio.tsp;
 
 import java.io.*;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.InputMismatchException;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>Class storing data for an instance of the TSP.</p>
@@ -12,22 +18,70 @@ import java.util.Scanner;
  */
 public final class TspData {
 
-  private final City[] cities;
-  private final int[][] distanceMatrix;
+  private final int[] xs;
+  private final int[] ys;
+  private final DistanceTable distances;
+  private final Map<CandidatesKey, TspCandidates> candidates = new ConcurrentHashMap<>();
 
   /**
    * Creates a new TspData.
    *
-   * @param cities Array of cities.
-   * @param distanceMatrix Matrix of distances between cities.
+   * @param xs X coordinates of the cities.
+   * @param ys Y coordinates of the cities.
+   * @param storage Strategy used to store the distances between cities.
+   * @param memoryBudget Number of bytes the distance storage may use.
    */
-  private TspData(final City[] cities, final int[][] distanceMatrix) {
-    this.cities = cities;
-    this.distanceMatrix = distanceMatrix;
+  private TspData(final int[] xs, final int[] ys, final TspDistanceStorage storage, final long memoryBudget) {
+    this(xs, ys, TspInstrumentation.createDistances(storage, xs, ys, memoryBudget));
   }
 
   /**
-   * Creates a new TspData instance from a text file containing cities' data.
+   * Creates a new TspData from already built distances.
+   *
+   * @param xs X coordinates of the cities.
+   * @param ys Y coordinates of the cities.
+   * @param distances Distances between cities, built over the same coordinates.
+   */
+  TspData(final int[] xs, final int[] ys, final DistanceTable distances) {
+    this.xs = xs;
+    this.ys = ys;
+    this.distances = distances;
+  }
+
+  /**
+   * Creates a new TspData from coordinates, storing distances with the fastest strategy fitting in
+   * {@link TspDistanceStorage#defaultMemoryBudget()}. The arrays are not copied.
+   *
+   * @param xs X coordinates of the cities.
+   * @param ys Y coordinates of the cities.
+   * @throws IllegalArgumentException If the arrays differ in length, or hold less than 3 cities.
+   */
+  public static TspData fromCoordinates(final int[] xs, final int[] ys) {
+    return fromCoordinates(xs, ys, TspDistanceStorage.defaultMemoryBudget());
+  }
+
+  /**
+   * Creates a new TspData from coordinates, storing distances with the fastest strategy fitting in the given
+   * memory budget. The arrays are not copied.
+   *
+   * @param xs X coordinates of the cities.
+   * @param ys Y coordinates of the cities.
+   * @param memoryBudget Number of bytes the distance storage may use.
+   * @throws IllegalArgumentException If the arrays differ in length, or hold less than 3 cities.
+   */
+  public static TspData fromCoordinates(final int[] xs, final int[] ys, final long memoryBudget) {
+    if (xs.length != ys.length) {
+      throw new IllegalArgumentException("Coordinate arrays should have the same length.");
+    }
+    if (xs.length < 3) {
+      throw new IllegalArgumentException("Number of cities should be at least 3.");
+    }
+    return new TspData(xs, ys, TspDistanceStorage.forBudget(xs.length, memoryBudget), memoryBudget);
+  }
+
+  /**
+   * Creates a new TspData instance from a text file containing cities' data, storing distances with the
+   * fastest strategy fitting in {@link TspDistanceStorage#defaultMemoryBudget()}.
    *
    * @param filename name of the file to read from.
    * @throws FileNotFoundException If file can't be found.
@@ -35,82 +89,172 @@ public final class TspData {
    * @throws OutOfMemoryError    If the number of cities is too large.
    */
   public static TspData fromFile(final String filename) throws TspParsingException, FileNotFoundException {
-    try (Scanner scanner = new Scanner(new BufferedReader(new FileReader(filename)))) {
-      // Check that inputStream is open and not empty
-      try {
-        if (!scanner.hasNext()) {
-          throw new TspParsingException("Invalid data. Empty data.");
-        }
-      } catch (IllegalStateException e) {
-        throw new TspParsingException("Invalid data. Unable to read data.");
-      }
+    return fromFile(filename, TspDistanceStorage.defaultMemoryBudget());
+  }
 
-      // Read the number of cities
-      int numberOfCities;
-      try {
-        numberOfCities = scanner.nextInt();
-      } catch (InputMismatchException e) {
-        throw new TspParsingException("Invalid data value. Invalid number of cities in first line of data file.");
-      } catch (NoSuchElementException e) {
-        throw new TspParsingException("Invalid data format. Empty data file.");
-      }
-      if (numberOfCities < 3) {
-        throw new TspParsingException("Invalid data value. Number of cities should be at least 3.");
-      }
+  /**
+   * Creates a new TspData instance from a text file containing cities' data, storing distances with the
+   * fastest strategy fitting in the given memory budget.
+   *
+   * @param filename name of the file to read from.
+   * @param memoryBudget Number of bytes the distance storage may use.
+   * @throws FileNotFoundException If file can't be found.
+   * @throws TspParsingException If file content does not conform to expected format.
+   * @throws OutOfMemoryError    If the number of cities is too large.
+   */
+  public static TspData fromFile(final String filename, final long memoryBudget)
+        throws TspParsingException, FileNotFoundException {
+    return fromFile(filename, null, memoryBudget);
+  }
 
+  /**
+   * Creates a new TspData instance from a text file containing cities' data, storing distances with the
+   * given strategy.
+   *
+   * @param filename name of the file to read from.
+   * @param storage Strategy used to store the distances between cities.
+   * @throws FileNotFoundException If file can't be found.
+   * @throws TspParsingException If file content does not conform to expected format.
+   * @throws OutOfMemoryError    If the number of cities is too large for the strategy.
+   * @throws NullPointerException If storage is null.
+   */
+  public static TspData fromFile(final String filename, final TspDistanceStorage storage)
+        throws TspParsingException, FileNotFoundException {
+    Objects.requireNonNull(storage, "storage must not be null");
+    return fromFile(filename, storage, TspDistanceStorage.defaultMemoryBudget());
+  }
 
-      // Allocate the array storing the XY coordinates of the cities
-      City[] cities;
-      try {
-        cities = new City[numberOfCities];
-      } catch (OutOfMemoryError e) {
-        throw new OutOfMemoryError("Out of memory error. Number of cities is too large.");
-      }
+  /**
+   * Parses a text file and stores distances with the given strategy, or the one picked for the budget if
+   * storage is null.
+   */
+  private static TspData fromFile(final String filename, final TspDistanceStorage storage, final long memoryBudget)
+        throws TspParsingException, FileNotFoundException {
+    Path path = Path.of(filename);
+    if (Files.isDirectory(path)) {
+      throw new FileNotFoundException(filename + " (Is a directory)");
+    }
+
+    try (DatParser parser = DatParser.open(path)) {
+      return parse(parser, filename, storage, memoryBudget);
+    } catch (NoSuchFileException e) {
+      throw new FileNotFoundException(filename + " (No such file or directory)");
+    } catch (AccessDeniedException e) {
+      throw new FileNotFoundException(filename + " (Permission denied)");
+    } catch (IOException e) {
+      throw new TspParsingException("Invalid data. Unable to read data.");
+    }
+  }
+
+  /**
+   * Creates a new TspData instance from a text file containing cities' data, storing distances with the
+   * fastest strategy fitting in {@link TspDistanceStorage#defaultMemoryBudget()}. The file is memory-mapped
+   * while being parsed.
+   *
+   * @param path path of the file to read from.
+   * @throws IOException If the file can't be read.
+   * @throws TspParsingException If file content does not conform to expected format.
+   * @throws OutOfMemoryError    If the number of cities is too large.
+   */
+  public static TspData fromPath(final Path path) throws TspParsingException, IOException {
+    return fromPath(path, TspDistanceStorage.defaultMemoryBudget());
+  }
 
-      // Read the coordinates of each city
-      for (int cityReadCount = 0; cityReadCount < numberOfCities; cityReadCount++) {
-        try {
-          int cityNumber = scanner.nextInt();
-          if (cityNumber != cityReadCount) {
-            throw new TspParsingException(
-                  String.format("Invalid city number: %s expected, %s read.", cityNumber, cityReadCount));
-          }
-          int x = scanner.nextInt();
-          int y = scanner.nextInt();
-          cities[cityNumber] = new City(x, y);
-        } catch (InputMismatchException e) {
-          throw new TspParsingException("Invalid data value. City numbers and coordinates should be non negative integers.");
-        } catch (NoSuchElementException e) {
+  /**
+   * Creates a new TspData instance from a text file containing cities' data, storing distances with the
+   * fastest strategy fitting in the given memory budget. The file is memory-mapped while being parsed.
+   *
+   * @param path path of the file to read from.
+   * @param memoryBudget Number of bytes the distance storage may use.
+   * @throws IOException If the file can't be read.
+   * @throws TspParsingException If file content does not conform to expected format.
+   * @throws OutOfMemoryError    If the number of cities is too large.
+   */
+  public static TspData fromPath(final Path path, final long memoryBudget) throws TspParsingException, IOException {
+    try (DatParser parser = DatParser.open(path)) {
+      return parse(parser, path.toString(), null, memoryBudget);
+    }
+  }
+
+  /**
+   * Creates a new TspData instance from a stream of cities' data, storing distances with the fastest
+   * strategy fitting in {@link TspDistanceStorage#defaultMemoryBudget()}. The stream may be read past the last
+   * city, and is not closed.
+   *
+   * @param stream stream to read from.
+   * @throws IOException If the stream can't be read.
+   * @throws TspParsingException If stream content does not conform to expected format.
+   * @throws OutOfMemoryError    If the number of cities is too large.
+   */
+  public static TspData fromStream(final InputStream stream) throws TspParsingException, IOException {
+    return parse(DatParser.open(stream), "stream", null, TspDistanceStorage.defaultMemoryBudget());
+  }
+
+  /**
+   * Parses cities' data, and stores distances with the given strategy, or the one picked for the budget if
+   * storage is null.
+   */
+  private static TspData parse(final DatParser parser, final String source, final TspDistanceStorage storage,
+                               final long memoryBudget) throws TspParsingException, IOException {
+    long start = System.nanoTime();
+    TspInstrumentation.LoadEvent event = TspInstrumentation.beginLoad(source);
+
+    // Check that input is not empty
+    if (!parser.hasNext()) {
+      throw new TspParsingException("Invalid data. Empty data.");
+    }
+
+    // Read the number of cities
+    int numberOfCities;
+    try {
+      numberOfCities = parser.nextInt();
+    } catch (InputMismatchException e) {
+      throw new TspParsingException("Invalid data value. Invalid number of cities in first line of data file.");
+    } catch (NoSuchElementException e) {
+      throw new TspParsingException("Invalid data format. Empty data file.");
+    }
+    if (numberOfCities < 3) {
+      throw new TspParsingException("Invalid data value. Number of cities should be at least 3.");
+    }
+
+
+    // Allocate the arrays storing the XY coordinates of the cities
+    int[] xs;
+    int[] ys;
+    try {
+      xs = new int[numberOfCities];
+      ys = new int[numberOfCities];
+    } catch (OutOfMemoryError e) {
+      throw new OutOfMemoryError("Out of memory error. Number of cities is too large.");
+    }
+
+    // Read the coordinates of each city
+    for (int cityReadCount = 0; cityReadCount < numberOfCities; cityReadCount++) {
+      try {
+        int cityNumber = parser.nextInt();
+        if (cityNumber != cityReadCount) {
           throw new TspParsingException(
-                "Incomplete line : should follow format \"<city number> <x> <y>\""
-          );
-        } catch (IllegalStateException e) {
-          throw new TspParsingException("Invalid data. Unable to read data.");
+                String.format("Invalid city number: %s expected, %s read.", cityNumber, cityReadCount));
         }
+        xs[cityNumber] = parser.nextInt();
+        ys[cityNumber] = parser.nextInt();
+      } catch (InputMismatchException e) {
+        throw new TspParsingException("Invalid data value. City numbers and coordinates should be non negative integers.");
+      } catch (NoSuchElementException e) {
+        throw new TspParsingException(
+              "Incomplete line : should follow format \"<city number> <x> <y>\""
+        );
       }
+    }
 
-      // Try to allocate the distance matrix between cities.
-      // If not enough space is available, set distanceMatrix to null (distances will have to be recomputed
-      // each time in getDistance(i,j)).
-      int[][] distanceMatrix;
-      try {
-        distanceMatrix = new int[numberOfCities][numberOfCities];
-      } catch (OutOfMemoryError e) {
-        distanceMatrix = null;
-      }
+    TspInstrumentation.endLoad(event, start, numberOfCities);
 
-      if (distanceMatrix != null) {
-        for (int i = 0; i < cities.length; i++) {
-          distanceMatrix[i][i] = 0;
-          for (int j = 0; j < i; j++) {
-            distanceMatrix[i][j] = distanceMatrix[j][i] =
-                  (int) Math.round(Math.hypot(cities[i].x - cities[j].x, cities[i].y - cities[j].y));
-          }
-        }
-      }
+    // Pick the distance storage up front, rather than trying to allocate a full matrix
+    TspDistanceStorage actualStorage = storage != null
+          ? storage
+          : TspDistanceStorage.forBudget(numberOfCities, memoryBudget);
 
-      return new TspData(cities, distanceMatrix);
-    }
+    return new TspData(xs, ys, actualStorage, memoryBudget);
   }
 
   /**
@@ -123,16 +267,126 @@ public final class TspData {
    */
   public int getDistance(int i, int j) {
     // Check for out of bounds indices
-    if (i < 0 || i >= cities.length || j < 0 || j >= cities.length) {
+    if (i < 0 || i >= xs.length || j < 0 || j >= xs.length) {
+      throw new IndexOutOfBoundsException("City index out of bounds.");
+    }
+
+    if (TspInstrumentation.ENABLED) {
+      TspInstrumentation.countLookups(1);
+    }
+    return distances.get(i, j);
+  }
+
+  /**
+   * <p>Copies the distances from a city to every city of this instance, {@code destination[j]} receiving
+   * {@code getDistance(i, j)}.</p>
+   *
+   * <p>Bounds are checked once per call, which makes this method faster than calling
+   * {@link #getDistance(int, int)} in a loop.</p>
+   *
+   * @param i City index.
+   * @param destination Array receiving the distances, of length at least {@link #getNumberOfCities()}.
+   * @throws IndexOutOfBoundsException If i is out of bounds or destination is too short.
+   */
+  public void getDistances(int i, int[] destination) {
+    // Check for out of bounds index and destination
+    if (i < 0 || i >= xs.length || destination.length < xs.length) {
+      throw new IndexOutOfBoundsException("City index out of bounds.");
+    }
+
+    if (TspInstrumentation.ENABLED) {
+      TspInstrumentation.countLookups(xs.length);
+    }
+    distances.row(i, destination);
+  }
+
+  /**
+   * <p>Copies the distances from a city to the first {@code count} cities of an array, {@code destination[k]}
+   * receiving {@code getDistance(i, cities[k])}.</p>
+   *
+   * <p>Bounds of the source city and of the arrays are checked once per call, which makes this method faster
+   * than calling {@link #getDistance(int, int)} in a loop.</p>
+   *
+   * @param i City index.
+   * @param cities Array of city indices.
+   * @param count Number of cities to read from the array.
+   * @param destination Array receiving the distances, of length at least {@code count}.
+   * @throws IndexOutOfBoundsException If a city index is out of bounds, or count does not fit in the arrays.
+   */
+  public void getDistances(int i, int[] cities, int count, int[] destination) {
+    // Check for out of bounds index and arrays, city indices are checked by the array accesses
+    if (i < 0 || i >= xs.length || count < 0 || count > cities.length || count > destination.length) {
       throw new IndexOutOfBoundsException("City index out of bounds.");
     }
 
-    // If distanceMatrix was not allocated, compute distance from i to j.
-    if (distanceMatrix == null) {
-      return (int) Math.round(Math.hypot(cities[i].x - cities[j].x, cities[i].y - cities[j].y));
-    } else {
-      return distanceMatrix[i][j];
+    if (TspInstrumentation.ENABLED) {
+      TspInstrumentation.countLookups(count);
     }
+    distances.gather(i, cities, count, destination);
+  }
+
+  /**
+   * <p>Finds the nearest city to a city among the first {@code count} cities of an array. The distances are
+   * gathered as by {@link #getDistances(int, int[], int, int[])}, then reduced to their minimum in a single
+   * pass, vectorised like the distance computations when the Vector API is available.</p>
+   *
+   * @param i City index.
+   * @param cities Array of city indices.
+   * @param count Number of cities to read from the array.
+   * @param distances Array receiving the distances to the cities, of length at least {@code count}.
+   * @return Position in the array of the nearest city (lowest city index on ties), or -1 if count is zero.
+   * @throws IndexOutOfBoundsException If a city index is out of bounds, or count does not fit in the arrays.
+   */
+  public int getNearest(int i, int[] cities, int count, int[] distances) {
+    getDistances(i, cities, count, distances);
+    return DistanceKernel.INSTANCE.nearest(distances, cities, count);
+  }
+
+  /**
+   * Returns the k nearest cities of every city, see {@link #getCandidates(int, TspCandidates.Mode)}.
+   *
+   * @param k Number of candidates per city, reduced to the number of other cities if larger.
+   * @return Candidate lists.
+   * @throws IllegalArgumentException If k is not positive.
+   */
+  public TspCandidates getCandidates(int k) {
+    return getCandidates(k, TspCandidates.Mode.NEAREST);
+  }
+
+  /**
+   * Returns the candidate neighbours of every city. Lists are built on the first call for a given k and mode,
+   * and cached along with this instance.
+   *
+   * @param k Number of candidates per city, reduced to the number of other cities if larger.
+   * @param mode How candidates are chosen.
+   * @return Candidate lists.
+   * @throws IllegalArgumentException If k is not positive, or the lists do not fit in an array.
+   */
+  public TspCandidates getCandidates(int k, TspCandidates.Mode mode) {
+    return candidates.computeIfAbsent(
+          new CandidatesKey(Math.min(k, xs.length - 1), Objects.requireNonNull(mode, "mode must not be null")),
+          key -> TspCandidates.build(this, k, mode)
+    );
+  }
+
+  /**
+   * Returns the strategy used to store the distances of this instance. Distances read in place from a
+   * {@link TspSnapshot} are reported as {@link TspDistanceStorage#TRIANGULAR}, the layout they share.
+   *
+   * @return Distance storage strategy.
+   */
+  public TspDistanceStorage getDistanceStorage() {
+    return distances.storage();
+  }
+
+  /**
+   * Returns an estimate of the heap memory used by this instance: coordinates and distance storage, candidate
+   * lists excluded. Row caches are counted as full.
+   *
+   * @return Estimated memory footprint, in bytes.
+   */
+  public long getMemoryFootprint() {
+    return 2 * (16 + 4L * xs.length) + distances.footprint();
   }
 
   /**
@@ -141,7 +395,7 @@ public final class TspData {
    * @return Number of cities.
    */
   public int getNumberOfCities() {
-    return cities.length;
+    return xs.length;
   }
 
   /**
@@ -153,11 +407,11 @@ public final class TspData {
    */
   public int getXCoordinateForCity(int i) {
     // Check for out of bounds index
-    if (i < 0 || i >= cities.length) {
+    if (i < 0 || i >= xs.length) {
       throw new IndexOutOfBoundsException("City index out of bounds.");
     }
 
-    return cities[i].x;
+    return xs[i];
   }
 
   /**
@@ -169,16 +423,13 @@ public final class TspData {
    */
   public int getYCoordinateForCity(int i) {
     // Check for out of bounds index
-    if (i < 0 || i >= cities.length) {
+    if (i < 0 || i >= xs.length) {
       throw new IndexOutOfBoundsException("City index out of bounds.");
     }
 
-    return cities[i].y;
+    return ys[i];
   }
 
-  /**
-   * Static nested class storing cities' XY coordinates
-   */
-  private record City(int x, int y) {
+  private record CandidatesKey(int k, TspCandidates.Mode mode) {
   }
 }
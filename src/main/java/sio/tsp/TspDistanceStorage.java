@@ -0,0 +1,129 @@
+package sio.tsp;
+
+/**
+ * <p>Strategies available to store the distances between the cities of a {@link TspData}.</p>
+ *
+ * <p>All strategies return the same distances, they only trade memory for access speed.</p>
+ */
+public enum TspDistanceStorage {
+  /**
+   * Full {@code int[n][n]} matrix, fastest access.
+   */
+  MATRIX {
+    @Override
+    public long requiredBytes(final int numberOfCities) {
+      return numberOfCities * (ARRAY_HEADER_BYTES + 4L * numberOfCities) + ARRAY_HEADER_BYTES + 4L * numberOfCities;
+    }
+
+    @Override
+    DistanceTable create(final int[] xs, final int[] ys, final long memoryBudget) {
+      return new DistanceTable.Matrix(xs, ys);
+    }
+  },
+
+  /**
+   * Triangle of the symmetric matrix packed in a single {@code int[]}, half the size of the full matrix. Limited to
+   * {@value #MAX_TRIANGULAR_CITIES} cities.
+   */
+  TRIANGULAR {
+    @Override
+    public long requiredBytes(final int numberOfCities) {
+      return numberOfCities > MAX_TRIANGULAR_CITIES
+            ? Long.MAX_VALUE
+            : ARRAY_HEADER_BYTES + 4L * DistanceTable.Triangular.size(numberOfCities);
+    }
+
+    @Override
+    DistanceTable create(final int[] xs, final int[] ys, final long memoryBudget) {
+      if (xs.length > MAX_TRIANGULAR_CITIES) {
+        throw new IllegalArgumentException("Too many cities for a triangular distance storage.");
+      }
+      return new DistanceTable.Triangular(xs, ys);
+    }
+  },
+
+  /**
+   * Distances computed on access, with the rows recently read through {@link TspData#getDistances} kept in a
+   * direct-mapped cache fitting the memory budget. Suited to heuristics reading whole rows, like the nearest
+   * neighbour ones.
+   */
+  ROW_CACHE {
+    @Override
+    public long requiredBytes(final int numberOfCities) {
+      return MIN_CACHED_ROWS * (ARRAY_HEADER_BYTES + 4L * numberOfCities);
+    }
+
+    @Override
+    DistanceTable create(final int[] xs, final int[] ys, final long memoryBudget) {
+      long rows = memoryBudget / (ARRAY_HEADER_BYTES + 4L * xs.length);
+      return new DistanceTable.RowCache(xs, ys, (int) Math.max(1, Math.min(rows, xs.length)));
+    }
+  },
+
+  /**
+   * Nothing stored, every distance is computed on access.
+   */
+  ON_THE_FLY {
+    @Override
+    public long requiredBytes(final int numberOfCities) {
+      return 0;
+    }
+
+    @Override
+    DistanceTable create(final int[] xs, final int[] ys, final long memoryBudget) {
+      return new DistanceTable.Computed(xs, ys);
+    }
+  };
+
+  /**
+   * Largest number of cities whose packed triangle fits in a Java array.
+   */
+  public static final int MAX_TRIANGULAR_CITIES = 65_535;
+
+  /**
+   * Name of the system property overriding the default memory budget, in bytes.
+   */
+  public static final String MEMORY_BUDGET_PROPERTY = "sio.tsp.distanceMemoryBudget";
+
+  private static final long ARRAY_HEADER_BYTES = 16;
+  private static final long MIN_CACHED_ROWS = 64;
+
+  /**
+   * Returns the number of bytes needed to store the distances of an instance with this strategy.
+   *
+   * @param numberOfCities Number of cities of the instance.
+   * @return Estimated memory footprint, {@link Long#MAX_VALUE} if the strategy cannot hold the instance.
+   */
+  public abstract long requiredBytes(int numberOfCities);
+
+  /**
+   * Creates the storage for the given coordinates.
+   */
+  abstract DistanceTable create(int[] xs, int[] ys, long memoryBudget);
+
+  /**
+   * Picks the fastest strategy whose footprint fits the given memory budget.
+   *
+   * @param numberOfCities Number of cities of the instance.
+   * @param memoryBudget   Number of bytes that may be used to store distances.
+   * @return Strategy to use.
+   */
+  public static TspDistanceStorage forBudget(final int numberOfCities, final long memoryBudget) {
+    for (TspDistanceStorage storage : values()) {
+      if (storage.requiredBytes(numberOfCities) <= memoryBudget) {
+        return storage;
+      }
+    }
+    return ON_THE_FLY;
+  }
+
+  /**
+   * Returns the default memory budget: the value of the {@value #MEMORY_BUDGET_PROPERTY} system property if
+   * set, half of the maximum heap size otherwise.
+   *
+   * @return Default memory budget, in bytes.
+   */
+  public static long defaultMemoryBudget() {
+    return Long.getLong(MEMORY_BUDGET_PROPERTY, Runtime.getRuntime().maxMemory() / 2);
+  }
+}
@@ -0,0 +1,379 @@
+package sio.tsp;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * <p>Instrumentation of the hot paths: loading, distance storage, tours and improvements.</p>
+ *
+ * <p>Each phase emits a JDK Flight Recorder event, recorded when a recording enables it (for instance with
+ * {@code -XX:StartFlightRecording}). When the {@value #PROPERTY} system property is {@code true}, the time spent
+ * in each phase and the number of distances read and computed are also counted, see {@link Phase},
+ * {@link #distanceLookups()} and {@link #distanceComputations()}.</p>
+ *
+ * <p>The property is read once, when this class is initialised, so that the JIT compiler removes the counting
+ * entirely when it is off. Events which are not recorded cost a check of their settings.</p>
+ */
+public final class TspInstrumentation {
+
+  /**
+   * Name of the system property enabling the counters.
+   */
+  public static final String PROPERTY = "sio.tsp.instrumentation";
+
+  static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+  private static final LongAdder DISTANCE_LOOKUPS = new LongAdder();
+  private static final LongAdder DISTANCE_COMPUTATIONS = new LongAdder();
+
+  private TspInstrumentation() {
+  }
+
+  /**
+   * Phases whose time is counted when the counters are enabled.
+   */
+  public enum Phase {
+    /**
+     * Parsing of text files and reading of snapshots, without building the distance storage.
+     */
+    LOAD,
+
+    /**
+     * Building of the distance storage of an instance.
+     */
+    DISTANCES,
+
+    /**
+     * Tours computed through {@link #computeTour(TspConstructiveHeuristic, TspData, int)} or
+     * {@link #computeTour(TspConstructiveHeuristic, TspWorkspace, int)} and its bounded variant, improvements and
+     * abandoned tours included. Tours computed by calling a heuristic directly, such as the ones a heuristic
+     * computes on parts of an instance, are not recorded.
+     */
+    TOUR,
+
+    /**
+     * Improvement passes chained by {@link TspConstructiveHeuristic#andThen(TspTourImprovement)}.
+     */
+    IMPROVEMENT;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    /**
+     * Returns the number of times this phase ran since the last {@link #reset()}.
+     *
+     * @return Number of runs, 0 when the counters are disabled.
+     */
+    public long count() {
+      return count.sum();
+    }
+
+    /**
+     * Returns the time spent in this phase since the last {@link #reset()}, summed over every thread.
+     *
+     * @return Time spent, in nanoseconds, 0 when the counters are disabled.
+     */
+    public long nanos() {
+      return nanos.sum();
+    }
+
+    void add(final long elapsedNanos) {
+      count.increment();
+      nanos.add(elapsedNanos);
+    }
+  }
+
+  /**
+   * Returns whether the counters are enabled, by the {@value #PROPERTY} system property.
+   *
+   * @return True if the counters are enabled.
+   */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Returns the number of distances read through {@link TspData} since the last {@link #reset()}, whether stored
+   * or computed on access.
+   *
+   * @return Number of distances read, 0 when the counters are disabled.
+   */
+  public static long distanceLookups() {
+    return DISTANCE_LOOKUPS.sum();
+  }
+
+  /**
+   * Returns the number of distances computed on access since the last {@link #reset()}, by storages which do not
+   * hold every distance. Rows filled by the row cache count as many computations as cities.
+   *
+   * @return Number of distances computed, 0 when the counters are disabled.
+   */
+  public static long distanceComputations() {
+    return DISTANCE_COMPUTATIONS.sum();
+  }
+
+  /**
+   * Resets every counter.
+   */
+  public static void reset() {
+    DISTANCE_LOOKUPS.reset();
+    DISTANCE_COMPUTATIONS.reset();
+    for (Phase phase : Phase.values()) {
+      phase.count.reset();
+      phase.nanos.reset();
+    }
+  }
+
+  /**
+   * Computes a tour, recording it as a {@link Phase#TOUR}.
+   *
+   * @param heuristic Heuristic computing the tour.
+   * @param data Data of problem instance.
+   * @param startCityIndex Index of starting city.
+   * @return Computed tour.
+   */
+  public static TspTour computeTour(final TspConstructiveHeuristic heuristic, final TspData data,
+                                    final int startCityIndex) {
+    TourEvent event = new TourEvent();
+    if (!ENABLED && !event.isEnabled()) {
+      return heuristic.computeTour(data, startCityIndex);
+    }
+
+    long start = System.nanoTime();
+    event.begin();
+    TspTour tour = heuristic.computeTour(data, startCityIndex);
+    event.end();
+    if (ENABLED) {
+      Phase.TOUR.add(System.nanoTime() - start);
+    }
+    if (event.shouldCommit()) {
+      event.heuristic = heuristic.getClass();
+      event.cities = data.getNumberOfCities();
+      event.startCity = startCityIndex;
+      event.length = tour.length();
+      event.commit();
+    }
+    return tour;
+  }
+
+  /**
+   * Computes a tour in a workspace, recording it as a {@link Phase#TOUR}.
+   *
+   * @param heuristic Heuristic which created the workspace, recorded in the event.
+   * @param workspace Workspace computing the tour.
+   * @param startCityIndex Index of starting city.
+   * @return Length of the computed tour.
+   */
+  public static long computeTour(final TspConstructiveHeuristic heuristic, final TspWorkspace workspace,
+                                 final int startCityIndex) {
+    return recordTour(heuristic, workspace, startCityIndex, null);
+  }
+
+  /**
+   * Computes a tour in a workspace against a bound, recording it as a {@link Phase#TOUR}, see
+   * {@link TspWorkspace#computeTour(int, LongSupplier)}.
+   *
+   * @param heuristic Heuristic which created the workspace, recorded in the event.
+   * @param workspace Workspace computing the tour.
+   * @param startCityIndex Index of starting city.
+   * @param bound Supplier of the length above which the tour is abandoned.
+   * @return Length of the computed tour, or {@link TspWorkspace#ABANDONED}, recorded as such in the event.
+   */
+  public static long computeTour(final TspConstructiveHeuristic heuristic, final TspWorkspace workspace,
+                                 final int startCityIndex, final LongSupplier bound) {
+    return recordTour(heuristic, workspace, startCityIndex, Objects.requireNonNull(bound, "bound must not be null"));
+  }
+
+  /**
+   * Computes a tour, against the bound unless it is null.
+   */
+  private static long recordTour(final TspConstructiveHeuristic heuristic, final TspWorkspace workspace,
+                                 final int startCityIndex, final LongSupplier bound) {
+    TourEvent event = new TourEvent();
+    if (!ENABLED && !event.isEnabled()) {
+      return bound == null ? workspace.computeTour(startCityIndex) : workspace.computeTour(startCityIndex, bound);
+    }
+
+    long start = System.nanoTime();
+    event.begin();
+    long length = bound == null ? workspace.computeTour(startCityIndex) : workspace.computeTour(startCityIndex, bound);
+    event.end();
+    if (ENABLED) {
+      Phase.TOUR.add(System.nanoTime() - start);
+    }
+    if (event.shouldCommit()) {
+      event.heuristic = heuristic.getClass();
+      event.cities = workspace.data().getNumberOfCities();
+      event.startCity = startCityIndex;
+      event.length = length;
+      event.commit();
+    }
+    return length;
+  }
+
+  /**
+   * Improves a tour, recording it as an {@link Phase#IMPROVEMENT}.
+   */
+  static TspTour improve(final TspTourImprovement improvement, final TspTour tour) {
+    ImprovementEvent event = new ImprovementEvent();
+    if (!ENABLED && !event.isEnabled()) {
+      return improvement.improve(tour);
+    }
+
+    long start = System.nanoTime();
+    event.begin();
+    TspTour improved = improvement.improve(tour);
+    event.end();
+    if (ENABLED) {
+      Phase.IMPROVEMENT.add(System.nanoTime() - start);
+    }
+    if (event.shouldCommit()) {
+      event.improvement = improvement.getClass();
+      event.cities = tour.size();
+      event.initialLength = tour.length();
+      event.improvedLength = improved.length();
+      event.commit();
+    }
+    return improved;
+  }
+
+  /**
+   * Starts an event loading an instance from the given file or snapshot, whose parsing is then recorded by
+   * {@link #endLoad(LoadEvent, long, int)}.
+   */
+  static LoadEvent beginLoad(final String source) {
+    LoadEvent event = new LoadEvent();
+    if (event.isEnabled()) {
+      event.source = source;
+      event.begin();
+    }
+    return event;
+  }
+
+  /**
+   * Records the parsing of an instance started by {@link #beginLoad(String)}.
+   *
+   * @param start Value of {@link System#nanoTime()} when the load started.
+   */
+  static void endLoad(final LoadEvent event, final long start, final int cities) {
+    if (ENABLED) {
+      Phase.LOAD.add(System.nanoTime() - start);
+    }
+    if (event.shouldCommit()) {
+      event.cities = cities;
+      event.commit();
+    }
+  }
+
+  /**
+   * Creates the distance storage of an instance, recording it as {@link Phase#DISTANCES}.
+   */
+  static DistanceTable createDistances(final TspDistanceStorage storage, final int[] xs, final int[] ys,
+                                       final long memoryBudget) {
+    DistancesEvent event = new DistancesEvent();
+    if (!ENABLED && !event.isEnabled()) {
+      return storage.create(xs, ys, memoryBudget);
+    }
+
+    long start = System.nanoTime();
+    event.begin();
+    DistanceTable distances = storage.create(xs, ys, memoryBudget);
+    event.end();
+    if (ENABLED) {
+      Phase.DISTANCES.add(System.nanoTime() - start);
+    }
+    if (event.shouldCommit()) {
+      event.storage = storage.name();
+      event.cities = xs.length;
+      event.memoryBudget = memoryBudget;
+      event.commit();
+    }
+    return distances;
+  }
+
+  /**
+   * Counts distances read through {@link TspData}. Callers check {@link #ENABLED} first.
+   */
+  static void countLookups(final long count) {
+    DISTANCE_LOOKUPS.add(count);
+  }
+
+  /**
+   * Counts distances computed on access. Callers check {@link #ENABLED} first.
+   */
+  static void countComputations(final long count) {
+    DISTANCE_COMPUTATIONS.add(count);
+  }
+
+  @Name("sio.tsp.Load")
+  @Label("TSP Load")
+  @Category("TSP")
+  @Description("Parsing of an instance, without building its distance storage")
+  static final class LoadEvent extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Cities")
+    int cities;
+  }
+
+  @Name("sio.tsp.Distances")
+  @Label("TSP Distance Storage")
+  @Category("TSP")
+  @Description("Building of the distance storage of an instance")
+  static final class DistancesEvent extends Event {
+    @Label("Storage")
+    String storage;
+
+    @Label("Cities")
+    int cities;
+
+    @Label("Memory Budget")
+    @DataAmount
+    long memoryBudget;
+  }
+
+  @Name("sio.tsp.Tour")
+  @Label("TSP Tour")
+  @Category("TSP")
+  @Description("Computation of a tour through the instrumentation, improvements included")
+  static final class TourEvent extends Event {
+    @Label("Heuristic")
+    Class<?> heuristic;
+
+    @Label("Cities")
+    int cities;
+
+    @Label("Start City")
+    int startCity;
+
+    @Label("Length")
+    @Description("Length of the tour, -1 when it was abandoned against a bound")
+    long length;
+  }
+
+  @Name("sio.tsp.Improvement")
+  @Label("TSP Improvement")
+  @Category("TSP")
+  @Description("Improvement pass over a tour")
+  static final class ImprovementEvent extends Event {
+    @Label("Improvement")
+    Class<?> improvement;
+
+    @Label("Cities")
+    int cities;
+
+    @Label("Initial Length")
+    long initialLength;
+
+    @Label("Improved Length")
+    long improvedLength;
+  }
+}
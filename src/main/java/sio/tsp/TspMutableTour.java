@@ -0,0 +1,176 @@
+package sio.tsp;
+
+import java.util.Objects;
+
+/**
+ * <p>Mutable tour, used as the working representation of improvement heuristics.</p>
+ *
+ * <p>The tour is a cycle, whose direction is given by {@link #next(int)}. Reversing a path, and thus
+ * applying a 2-opt move, does not allocate: small instances keep the order of the cities and the position
+ * of every city in arrays and reverse the shorter side of the cycle, instances of more than
+ * {@value #TWO_LEVEL_THRESHOLD} cities use a two-level doubly-linked list whose reversals take O(sqrt n).</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ */
+public abstract class TspMutableTour {
+
+  /**
+   * Number of cities above which a two-level list is used.
+   */
+  public static final int TWO_LEVEL_THRESHOLD = 50_000;
+
+  private final TspData data;
+
+  TspMutableTour(final TspData data) {
+    this.data = data;
+  }
+
+  /**
+   * Creates a mutable copy of a tour.
+   *
+   * @param tour Tour to copy.
+   * @return Mutable tour visiting the cities in the same order.
+   * @throws NullPointerException if {@code tour} is null
+   */
+  public static TspMutableTour of(final TspTour tour) {
+    return of(tour.data(), tour.tour());
+  }
+
+  /**
+   * Creates a mutable tour visiting cities in the given order.
+   *
+   * @param data Data of problem instance.
+   * @param order Cities in order of visit, copied.
+   * @return Mutable tour.
+   * @throws NullPointerException if an argument is null
+   * @throws IllegalArgumentException if {@code order} is not a permutation of the cities of the instance
+   */
+  public static TspMutableTour of(final TspData data, final int[] order) {
+    Objects.requireNonNull(data, "data must not be null");
+    int n = data.getNumberOfCities();
+    if (order.length != n) {
+      throw new IllegalArgumentException("order must contain every city once");
+    }
+    boolean[] seen = new boolean[n];
+    for (int city : order) {
+      if (city < 0 || city >= n || seen[city]) {
+        throw new IllegalArgumentException("order must contain every city once");
+      }
+      seen[city] = true;
+    }
+
+    return n > TWO_LEVEL_THRESHOLD ? new TwoLevelListTour(data, order) : new ArrayTour(data, order);
+  }
+
+  /**
+   * Returns the data of the problem instance.
+   *
+   * @return Data of problem instance.
+   */
+  public final TspData getData() {
+    return data;
+  }
+
+  /**
+   * Returns the number of cities of the tour.
+   *
+   * @return Number of cities.
+   */
+  public final int size() {
+    return data.getNumberOfCities();
+  }
+
+  /**
+   * Returns the city following a city in the tour.
+   *
+   * @param city City index.
+   * @return Next city.
+   * @throws IndexOutOfBoundsException If city is out of bounds.
+   */
+  public abstract int next(int city);
+
+  /**
+   * Returns the city preceding a city in the tour.
+   *
+   * @param city City index.
+   * @return Previous city.
+   * @throws IndexOutOfBoundsException If city is out of bounds.
+   */
+  public abstract int prev(int city);
+
+  /**
+   * Tells whether b lies on the path going from a to c in the direction of the tour, a and c included.
+   *
+   * @param a First city of the path.
+   * @param b City to locate.
+   * @param c Last city of the path.
+   * @return true if b is on the path.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public abstract boolean between(int a, int b, int c);
+
+  /**
+   * Reverses the path going from a city to another in the direction of the tour. The implementation may
+   * reverse the rest of the tour instead, which gives the same cycle in the opposite direction.
+   *
+   * @param from First city of the path.
+   * @param to Last city of the path.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public abstract void reverse(int from, int to);
+
+  /**
+   * Applies the 2-opt move replacing edges (a, b) and (c, d) with (a, c) and (b, d), b and d following a and
+   * c in the same direction, either the one of the tour or the opposite one.
+   *
+   * @param a First city of the first edge.
+   * @param b Second city of the first edge.
+   * @param c First city of the second edge.
+   * @param d Second city of the second edge.
+   * @throws IllegalArgumentException If the cities do not form two edges in the same direction.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public final void twoOptMove(int a, int b, int c, int d) {
+    if (next(a) == b && next(c) == d) {
+      reverse(b, c);
+    } else if (prev(a) == b && prev(c) == d) {
+      reverse(a, d);
+    } else {
+      throw new IllegalArgumentException("(a, b) and (c, d) must be edges of the tour in the same direction");
+    }
+  }
+
+  /**
+   * Copies the tour into an array, starting from the given city.
+   *
+   * @param startCity First city.
+   * @param destination Array receiving the cities in order of visit, of length at least {@link #size()}.
+   * @throws IndexOutOfBoundsException If startCity is out of bounds or destination is too short.
+   */
+  public void copyTo(int startCity, int[] destination) {
+    Objects.checkFromIndexSize(0, size(), destination.length);
+    int city = startCity;
+    for (int i = 0; i < size(); i++) {
+      destination[i] = city;
+      city = next(city);
+    }
+  }
+
+  /**
+   * Exports the tour, starting from the given city. Its length is computed like the one of the tours of the
+   * constructive heuristics, from the distances between consecutive cities of the tour.
+   *
+   * @param startCity First city.
+   * @return Immutable tour.
+   * @throws IndexOutOfBoundsException If startCity is out of bounds.
+   */
+  public TspTour toTour(int startCity) {
+    int[] order = new int[size()];
+    copyTo(startCity, order);
+    long length = 0;
+    for (int i = 1; i < order.length; i++) {
+      length += data.getDistance(order[i - 1], order[i]);
+    }
+    return new TspTour(data, order, length);
+  }
+}
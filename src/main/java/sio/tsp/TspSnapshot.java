@@ -0,0 +1,349 @@
+package sio.tsp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Binary snapshots of {@link TspData} instances, loaded by memory-mapping the file.</p>
+ *
+ * <p>A snapshot stores the coordinates of the cities and optionally the packed triangle of distances, which
+ * is then read in place rather than recomputed. It also records the size and modification time of the text
+ * file it was created from, so that stale snapshots are detected, and checksums of its content. Loading only
+ * checks the checksum of the coordinates, so that the distances are not all read up front; {@link #verify(Path)}
+ * checks the distances too.</p>
+ *
+ * <p>Layout, little-endian: magic, version, flags, number of cities (4 bytes each), source size, source
+ * modification time in milliseconds, checksum of coordinates, checksum of distances (8 bytes each), then
+ * the x coordinates, the y coordinates and the distances, as 4 bytes integers.</p>
+ */
+public final class TspSnapshot {
+
+  /**
+   * Current version of the format.
+   */
+  public static final int VERSION = 1;
+
+  /**
+   * Extension appended to the name of a text file to get its default snapshot.
+   */
+  public static final String EXTENSION = ".snap";
+
+  /**
+   * Largest number of cities whose distances can be stored, so that they fit in a single mapping.
+   */
+  public static final int MAX_CITIES_WITH_DISTANCES = 32_766;
+
+  private static final int MAGIC = 0x53505354; // "TSPS"
+  private static final int FLAG_DISTANCES = 1;
+  private static final int HEADER_BYTES = 48;
+  private static final int CHUNK_INTS = 1 << 14;
+
+  private TspSnapshot() {
+  }
+
+  /**
+   * Loads an instance from a text file, through its snapshot at {@code <file>.snap} if it is up to date. If
+   * the snapshot is missing, stale or invalid, the text file is parsed and the snapshot is (re)written.
+   *
+   * @param source text file containing cities' data.
+   * @param includeDistances whether a rewritten snapshot should contain distances.
+   * @return Loaded instance.
+   * @throws IOException If the source can't be read, or the snapshot can't be written.
+   * @throws TspParsingException If the source content does not conform to expected format.
+   */
+  public static TspData load(final Path source, final boolean includeDistances)
+        throws IOException, TspParsingException {
+    return load(source, includeDistances, TspDistanceStorage.defaultMemoryBudget());
+  }
+
+  /**
+   * Loads an instance from a text file, through its snapshot at {@code <file>.snap} if it is up to date. If
+   * the snapshot is missing, stale or invalid, the text file is parsed and the snapshot is (re)written.
+   * Distances which are not read from the snapshot are stored with the fastest strategy fitting in the given
+   * memory budget.
+   *
+   * @param source text file containing cities' data.
+   * @param includeDistances whether a rewritten snapshot should contain distances.
+   * @param memoryBudget Number of bytes the distance storage may use.
+   * @return Loaded instance.
+   * @throws IOException If the source can't be read, or the snapshot can't be written.
+   * @throws TspParsingException If the source content does not conform to expected format.
+   */
+  public static TspData load(final Path source, final boolean includeDistances, final long memoryBudget)
+        throws IOException, TspParsingException {
+    return load(source, source.resolveSibling(source.getFileName() + EXTENSION), includeDistances, memoryBudget);
+  }
+
+  /**
+   * Loads an instance from a text file, through the given snapshot if it is up to date. If the snapshot is
+   * missing, stale or invalid, the text file is parsed and the snapshot is (re)written.
+   *
+   * @param source text file containing cities' data.
+   * @param snapshot snapshot of the text file.
+   * @param includeDistances whether a rewritten snapshot should contain distances.
+   * @return Loaded instance.
+   * @throws IOException If the source can't be read, or the snapshot can't be written.
+   * @throws TspParsingException If the source content does not conform to expected format.
+   */
+  public static TspData load(final Path source, final Path snapshot, final boolean includeDistances)
+        throws IOException, TspParsingException {
+    return load(source, snapshot, includeDistances, TspDistanceStorage.defaultMemoryBudget());
+  }
+
+  /**
+   * Loads an instance from a text file, through the given snapshot if it is up to date. If the snapshot is
+   * missing, stale or invalid, the text file is parsed and the snapshot is (re)written. Distances which are
+   * not read from the snapshot are stored with the fastest strategy fitting in the given memory budget.
+   *
+   * @param source text file containing cities' data.
+   * @param snapshot snapshot of the text file.
+   * @param includeDistances whether a rewritten snapshot should contain distances.
+   * @param memoryBudget Number of bytes the distance storage may use.
+   * @return Loaded instance.
+   * @throws IOException If the source can't be read, or the snapshot can't be written.
+   * @throws TspParsingException If the source content does not conform to expected format.
+   */
+  public static TspData load(final Path source, final Path snapshot, final boolean includeDistances,
+                             final long memoryBudget) throws IOException, TspParsingException {
+    if (Files.isRegularFile(snapshot)) {
+      try {
+        TspData data = read(snapshot, source, memoryBudget);
+        if (data != null) {
+          return data;
+        }
+      } catch (TspParsingException | IOException e) {
+        // unreadable snapshot, rebuilt below from the source
+      }
+    }
+
+    TspData data = TspData.fromPath(source, memoryBudget);
+    write(data, snapshot, source, includeDistances);
+    return data;
+  }
+
+  /**
+   * Reads a snapshot, whatever the state of its source.
+   *
+   * @param snapshot snapshot file.
+   * @return Loaded instance.
+   * @throws IOException If the snapshot can't be read.
+   * @throws TspParsingException If the snapshot is invalid or corrupted.
+   */
+  public static TspData read(final Path snapshot) throws IOException, TspParsingException {
+    return read(snapshot, null, TspDistanceStorage.defaultMemoryBudget());
+  }
+
+  /**
+   * Checks the whole content of a snapshot against its checksums, distances included.
+   *
+   * @param snapshot snapshot file.
+   * @throws IOException If the snapshot can't be read.
+   * @throws TspParsingException If the snapshot is invalid or corrupted.
+   */
+  public static void verify(final Path snapshot) throws IOException, TspParsingException {
+    MappedByteBuffer buffer = map(snapshot);
+    int n = buffer.getInt(12);
+    long coordinatesBytes = 8L * n;
+    if (checksum(buffer.slice(HEADER_BYTES, (int) coordinatesBytes)) != buffer.getLong(32)
+          || checksum(buffer.slice(HEADER_BYTES + (int) coordinatesBytes,
+          buffer.capacity() - HEADER_BYTES - (int) coordinatesBytes)) != buffer.getLong(40)) {
+      throw new TspParsingException("Invalid snapshot. Checksum mismatch.");
+    }
+  }
+
+  /**
+   * Writes a snapshot of an instance.
+   *
+   * @param data instance to save.
+   * @param snapshot snapshot file, replaced atomically if it exists.
+   * @param source text file the instance was read from, whose size and modification time are recorded, may be
+   *               null.
+   * @param includeDistances whether to store the distances, ignored above {@value #MAX_CITIES_WITH_DISTANCES}
+   *                         cities.
+   * @throws IOException If the snapshot can't be written.
+   */
+  public static void write(final TspData data, final Path snapshot, final Path source, final boolean includeDistances)
+        throws IOException {
+    int n = data.getNumberOfCities();
+    boolean distances = includeDistances && n <= MAX_CITIES_WITH_DISTANCES;
+    long sourceSize = source == null ? -1 : Files.size(source);
+    long sourceTime = source == null ? -1 : Files.getLastModifiedTime(source).toMillis();
+
+    Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      var writer = new IntWriter(channel, HEADER_BYTES);
+
+      int[] row = new int[n];
+      for (int i = 0; i < n; i++) {
+        row[i] = data.getXCoordinateForCity(i);
+      }
+      writer.write(row, n);
+      for (int i = 0; i < n; i++) {
+        row[i] = data.getYCoordinateForCity(i);
+      }
+      writer.write(row, n);
+      long coordinatesChecksum = writer.checksum();
+
+      long distancesChecksum = 0;
+      if (distances) {
+        // row i of the triangle holds the distances to the cities before i
+        for (int i = 1; i < n; i++) {
+          data.getDistances(i, row);
+          writer.write(row, i);
+        }
+        distancesChecksum = writer.checksum();
+      }
+      writer.flush();
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC)
+            .putInt(VERSION)
+            .putInt(distances ? FLAG_DISTANCES : 0)
+            .putInt(n)
+            .putLong(sourceSize)
+            .putLong(sourceTime)
+            .putLong(coordinatesChecksum)
+            .putLong(distancesChecksum)
+            .flip();
+      while (header.hasRemaining()) {
+        channel.write(header, header.position());
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+
+    Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a snapshot, checking that it matches the given source if any. Distances which are not stored in the
+   * snapshot are stored with the fastest strategy fitting in the given memory budget.
+   *
+   * @return Loaded instance, or null if the snapshot is stale.
+   */
+  private static TspData read(final Path snapshot, final Path source, final long memoryBudget)
+        throws IOException, TspParsingException {
+    long start = System.nanoTime();
+    TspInstrumentation.LoadEvent event = TspInstrumentation.beginLoad(snapshot.toString());
+
+    MappedByteBuffer buffer = map(snapshot);
+    boolean distances = (buffer.getInt(8) & FLAG_DISTANCES) != 0;
+    int n = buffer.getInt(12);
+    if (source != null
+          && (buffer.getLong(16) != Files.size(source)
+          || buffer.getLong(24) != Files.getLastModifiedTime(source).toMillis())) {
+      return null;
+    }
+
+    long coordinatesBytes = 8L * n;
+    long distancesBytes = buffer.capacity() - HEADER_BYTES - coordinatesBytes;
+    ByteBuffer coordinates = buffer.slice(HEADER_BYTES, (int) coordinatesBytes).order(ByteOrder.LITTLE_ENDIAN);
+    if (checksum(coordinates) != buffer.getLong(32)) {
+      throw new TspParsingException("Invalid snapshot. Checksum mismatch.");
+    }
+    int[] xs = new int[n];
+    int[] ys = new int[n];
+    IntBuffer ints = coordinates.asIntBuffer();
+    ints.get(xs).get(ys);
+
+    if (!distances) {
+      TspInstrumentation.endLoad(event, start, n);
+      return TspData.fromCoordinates(xs, ys, memoryBudget);
+    }
+
+    // the distances are only checked by verify, checking them here would read the whole triangle
+    ByteBuffer triangle = buffer.slice(HEADER_BYTES + (int) coordinatesBytes, (int) distancesBytes)
+          .order(ByteOrder.LITTLE_ENDIAN);
+    TspInstrumentation.endLoad(event, start, n);
+    return new TspData(xs, ys, new DistanceTable.Mapped(xs, ys, triangle.asIntBuffer()));
+  }
+
+  /**
+   * Maps a snapshot, checking its header and its size.
+   */
+  private static MappedByteBuffer map(final Path snapshot) throws IOException, TspParsingException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+        throw new TspParsingException("Invalid snapshot. Unexpected size.");
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    if (buffer.getInt(0) != MAGIC) {
+      throw new TspParsingException("Invalid snapshot. Not a snapshot file.");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new TspParsingException("Invalid snapshot. Unsupported version " + buffer.getInt(4) + ".");
+    }
+    boolean distances = (buffer.getInt(8) & FLAG_DISTANCES) != 0;
+    int n = buffer.getInt(12);
+    long coordinatesBytes = 8L * n;
+    long distancesBytes = distances ? 4 * DistanceTable.Triangular.size(n) : 0;
+    if (n < 3 || buffer.capacity() != HEADER_BYTES + coordinatesBytes + distancesBytes) {
+      throw new TspParsingException("Invalid snapshot. Unexpected size.");
+    }
+    return buffer;
+  }
+
+  private static long checksum(final ByteBuffer buffer) {
+    CRC32 crc = new CRC32();
+    crc.update(buffer.duplicate());
+    return crc.getValue();
+  }
+
+  /**
+   * Buffered writer of little-endian ints, keeping a running checksum.
+   */
+  private static final class IntWriter {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(4 * CHUNK_INTS).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+    private long position;
+
+    IntWriter(final FileChannel channel, final long position) {
+      this.channel = channel;
+      this.position = position;
+    }
+
+    void write(final int[] values, final int count) throws IOException {
+      for (int i = 0; i < count; i++) {
+        if (!buffer.hasRemaining()) {
+          flush();
+        }
+        buffer.putInt(values[i]);
+      }
+    }
+
+    /**
+     * Returns the checksum of the ints written since the previous call, and resets it.
+     */
+    long checksum() throws IOException {
+      flush();
+      long value = crc.getValue();
+      crc.reset();
+      return value;
+    }
+
+    void flush() throws IOException {
+      buffer.flip();
+      crc.update(buffer.duplicate());
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      buffer.clear();
+    }
+  }
+}
@@ -0,0 +1,488 @@
+package sio.tsp;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>Balanced 2-d tree over the cities of a TSP instance, supporting removal of cities.</p>
+ *
+ * <p>Nearest neighbour queries are answered with the rounded distances returned by
+ * {@link TspData#getDistance(int, int)}, ties being broken on the lowest city index, so that the
+ * result is always the same as the one of a linear scan over the remaining cities. Distances are computed
+ * from the coordinates, so that queries never go through a partial distance storage.</p>
+ *
+ * <p>The k nearest cities can also be queried, optionally restricted to one of the four quadrants around a
+ * city. Quadrants are numbered counterclockwise from the positive x axis, each one including the half-axis
+ * that starts it, so that every city except those at the same location as the queried city lies in exactly
+ * one quadrant.</p>
+ *
+ * <p>Instances are mutable and not thread-safe.</p>
+ */
+public final class TspSpatialIndex {
+
+  /**
+   * Slack added to the pruning radius: distances are rounded from {@code sqrt(dx * dx + dy * dy)}, so a city
+   * at rounded distance d may lie up to half a unit farther, plus the error of the square root.
+   */
+  private static final double PRUNING_SLACK = 0.5 + 1e-6;
+
+  private final TspData data;
+
+  // Node of the tree rooted at the middle of [lo, hi) is stored at index (lo + hi) >>> 1
+  private final int[] cities;
+  private final int[] xs;
+  private final int[] ys;
+  private final boolean[] splitOnX;
+  private final boolean[] removed;
+  private final int[] alive;
+  private final int[] position;
+  // Bounding box of the subtree rooted at each node
+  private final int[] minXs;
+  private final int[] maxXs;
+  private final int[] minYs;
+  private final int[] maxYs;
+  private int size;
+
+  // State of the query being answered
+  private int queryCity;
+  private int queryX;
+  private int queryY;
+  private int bestCity;
+  private int bestDistance;
+  private double pruningRadius;
+  private int queryQuadrant;
+  private int heapCapacity;
+  private int heapSize;
+  private int[] heapCities = new int[0];
+  private int[] heapDistances = new int[0];
+
+  /**
+   * Creates a new index containing every city of the given instance.
+   *
+   * @param data Data of problem instance
+   * @throws NullPointerException if {@code data} is null
+   */
+  public TspSpatialIndex(final TspData data) {
+    this.data = Objects.requireNonNull(data, "data must not be null");
+
+    int n = data.getNumberOfCities();
+    cities = new int[n];
+    xs = new int[n];
+    ys = new int[n];
+    splitOnX = new boolean[n];
+    removed = new boolean[n];
+    alive = new int[n];
+    position = new int[n];
+    minXs = new int[n];
+    maxXs = new int[n];
+    minYs = new int[n];
+    maxYs = new int[n];
+    size = n;
+
+    for (int i = 0; i < n; i++) {
+      cities[i] = i;
+    }
+    build(0, n);
+    for (int i = 0; i < n; i++) {
+      position[cities[i]] = i;
+      xs[i] = data.getXCoordinateForCity(cities[i]);
+      ys[i] = data.getYCoordinateForCity(cities[i]);
+    }
+  }
+
+  /**
+   * Returns the number of cities still present in the index.
+   *
+   * @return Number of remaining cities.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Puts every removed city back in the index, without rebuilding it.
+   */
+  public void reset() {
+    Arrays.fill(removed, false);
+    size = cities.length;
+    resetAlive(0, cities.length);
+  }
+
+  private void resetAlive(int lo, int hi) {
+    if (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      alive[mid] = hi - lo;
+      resetAlive(lo, mid);
+      resetAlive(mid + 1, hi);
+    }
+  }
+
+  /**
+   * Tells whether a city is still present in the index.
+   *
+   * @param city City index
+   * @return true if the city has not been removed.
+   * @throws IndexOutOfBoundsException If city is out of bounds.
+   */
+  public boolean contains(int city) {
+    return !removed[position[city]];
+  }
+
+  /**
+   * Removes a city from the index. Removing a city twice has no effect.
+   *
+   * @param city City index
+   * @return true if the city was present in the index.
+   * @throws IndexOutOfBoundsException If city is out of bounds.
+   */
+  public boolean remove(int city) {
+    int pos = position[city];
+    if (removed[pos]) {
+      return false;
+    }
+
+    removed[pos] = true;
+    size--;
+
+    // walk down from the root and decrement the alive counters of every node on the way
+    int lo = 0;
+    int hi = cities.length;
+    while (true) {
+      int mid = (lo + hi) >>> 1;
+      alive[mid]--;
+      if (pos == mid) {
+        return true;
+      } else if (pos < mid) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      }
+    }
+  }
+
+  /**
+   * Finds the remaining city nearest to the given city, which does not need to be in the index.
+   *
+   * @param city City index
+   * @return Index of the nearest remaining city (lowest index on ties), or -1 if the index is empty.
+   * @throws IndexOutOfBoundsException If city is out of bounds.
+   */
+  public int nearest(int city) {
+    queryX = data.getXCoordinateForCity(city);
+    queryY = data.getYCoordinateForCity(city);
+    bestCity = -1;
+    bestDistance = Integer.MAX_VALUE;
+    pruningRadius = Double.POSITIVE_INFINITY;
+
+    search(0, cities.length);
+    return bestCity;
+  }
+
+  /**
+   * Finds the k remaining cities nearest to the given city, which does not need to be in the index and is
+   * never returned.
+   *
+   * @param city City index
+   * @param k Number of cities to find
+   * @param destination Array receiving the cities found, nearest first (lowest index first on ties)
+   * @return Number of cities found, less than k if fewer cities remain.
+   * @throws IndexOutOfBoundsException If city is out of bounds, or k is negative or larger than the
+   *                                   destination.
+   */
+  public int nearest(int city, int k, int[] destination) {
+    return nearest(city, -1, k, destination);
+  }
+
+  /**
+   * Finds the k remaining cities nearest to the given city in one of the quadrants around it. The city does
+   * not need to be in the index and is never returned.
+   *
+   * @param city City index
+   * @param quadrant Quadrant index, from 0 to 3: x &gt; 0 and y &ge; 0, x &le; 0 and y &gt; 0, x &lt; 0 and
+   *                 y &le; 0, x &ge; 0 and y &lt; 0, relative to the city.
+   * @param k Number of cities to find
+   * @param destination Array receiving the cities found, nearest first (lowest index first on ties)
+   * @return Number of cities found, less than k if fewer cities remain in the quadrant.
+   * @throws IndexOutOfBoundsException If city or quadrant are out of bounds, or k is negative or larger than
+   *                                   the destination.
+   */
+  public int nearestInQuadrant(int city, int quadrant, int k, int[] destination) {
+    return nearest(city, Objects.checkIndex(quadrant, 4), k, destination);
+  }
+
+  private int nearest(int city, int quadrant, int k, int[] destination) {
+    if (k < 0 || k > destination.length) {
+      throw new IndexOutOfBoundsException("Number of cities out of bounds.");
+    }
+
+    queryCity = city;
+    queryX = data.getXCoordinateForCity(city);
+    queryY = data.getYCoordinateForCity(city);
+    queryQuadrant = quadrant;
+    if (heapCities.length < k) {
+      heapCities = new int[k];
+      heapDistances = new int[k];
+    }
+    heapCapacity = k;
+    heapSize = 0;
+    pruningRadius = Double.POSITIVE_INFINITY;
+
+    if (k > 0) {
+      searchNearest(0, cities.length);
+    }
+
+    // popping the farthest city first fills the destination from its end
+    int count = heapSize;
+    for (int i = count - 1; i >= 0; i--) {
+      destination[i] = heapCities[0];
+      heapSize--;
+      siftDown(heapCities[heapSize], heapDistances[heapSize]);
+    }
+    return count;
+  }
+
+  /**
+   * Recursively searches the subtree stored in [lo, hi) for cities closer than the farthest one kept.
+   */
+  private void searchNearest(int lo, int hi) {
+    if (lo >= hi) {
+      return;
+    }
+
+    int mid = (lo + hi) >>> 1;
+    if (alive[mid] == 0 || !mayContainCandidates(mid)) {
+      return;
+    }
+
+    int candidate = cities[mid];
+    if (!removed[mid] && candidate != queryCity && inQuadrant(xs[mid], ys[mid])) {
+      offer(candidate, DistanceKernel.distance(queryX, queryY, xs[mid], ys[mid]));
+    }
+
+    long diff = splitOnX[mid] ? (long) queryX - xs[mid] : (long) queryY - ys[mid];
+    if (diff < 0) {
+      searchNearest(lo, mid);
+      searchNearest(mid + 1, hi);
+    } else {
+      searchNearest(mid + 1, hi);
+      searchNearest(lo, mid);
+    }
+  }
+
+  /**
+   * Tells whether the bounding box of the subtree rooted at the given node intersects both the queried
+   * quadrant and the pruning radius.
+   */
+  private boolean mayContainCandidates(int node) {
+    switch (queryQuadrant) {
+      case 0:
+        if (maxXs[node] <= queryX || maxYs[node] < queryY) {
+          return false;
+        }
+        break;
+      case 1:
+        if (minXs[node] > queryX || maxYs[node] <= queryY) {
+          return false;
+        }
+        break;
+      case 2:
+        if (minXs[node] >= queryX || minYs[node] > queryY) {
+          return false;
+        }
+        break;
+      case 3:
+        if (maxXs[node] < queryX || minYs[node] >= queryY) {
+          return false;
+        }
+        break;
+      default:
+        break;
+    }
+
+    double dx = Math.max(0, Math.max((long) minXs[node] - queryX, (long) queryX - maxXs[node]));
+    double dy = Math.max(0, Math.max((long) minYs[node] - queryY, (long) queryY - maxYs[node]));
+    return dx * dx + dy * dy <= pruningRadius;
+  }
+
+  private boolean inQuadrant(int x, int y) {
+    return switch (queryQuadrant) {
+      case 0 -> x > queryX && y >= queryY;
+      case 1 -> x <= queryX && y > queryY;
+      case 2 -> x < queryX && y <= queryY;
+      case 3 -> x >= queryX && y < queryY;
+      default -> true;
+    };
+  }
+
+  /**
+   * Keeps a city if it is among the k nearest found so far, in a max-heap ordered by distance then index.
+   */
+  private void offer(int city, int distance) {
+    if (heapSize < heapCapacity) {
+      // sift up
+      int i = heapSize++;
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (!farther(distance, city, heapDistances[parent], heapCities[parent])) {
+          break;
+        }
+        heapCities[i] = heapCities[parent];
+        heapDistances[i] = heapDistances[parent];
+        i = parent;
+      }
+      heapCities[i] = city;
+      heapDistances[i] = distance;
+    } else if (farther(heapDistances[0], heapCities[0], distance, city)) {
+      siftDown(city, distance);
+    } else {
+      return;
+    }
+
+    if (heapSize == heapCapacity) {
+      double radius = heapDistances[0] + PRUNING_SLACK;
+      pruningRadius = radius * radius;
+    }
+  }
+
+  /**
+   * Replaces the root of the heap with the given city and restores the heap order.
+   */
+  private void siftDown(int city, int distance) {
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize
+            && farther(heapDistances[child + 1], heapCities[child + 1], heapDistances[child], heapCities[child])) {
+        child++;
+      }
+      if (!farther(heapDistances[child], heapCities[child], distance, city)) {
+        break;
+      }
+      heapCities[i] = heapCities[child];
+      heapDistances[i] = heapDistances[child];
+      i = child;
+    }
+    heapCities[i] = city;
+    heapDistances[i] = distance;
+  }
+
+  private static boolean farther(int d1, int city1, int d2, int city2) {
+    return d1 > d2 || (d1 == d2 && city1 > city2);
+  }
+
+  /**
+   * Recursively searches the subtree stored in [lo, hi) for a city closer than the current best.
+   */
+  private void search(int lo, int hi) {
+    if (lo >= hi) {
+      return;
+    }
+
+    int mid = (lo + hi) >>> 1;
+    if (alive[mid] == 0) {
+      return;
+    }
+
+    if (!removed[mid]) {
+      int candidate = cities[mid];
+      int d = DistanceKernel.distance(queryX, queryY, xs[mid], ys[mid]);
+      if (d < bestDistance || (d == bestDistance && candidate < bestCity)) {
+        bestCity = candidate;
+        bestDistance = d;
+        double radius = d + PRUNING_SLACK;
+        pruningRadius = radius * radius;
+      }
+    }
+
+    long diff = splitOnX[mid] ? (long) queryX - xs[mid] : (long) queryY - ys[mid];
+    if (diff < 0) {
+      search(lo, mid);
+      if ((double) diff * diff <= pruningRadius) {
+        search(mid + 1, hi);
+      }
+    } else {
+      search(mid + 1, hi);
+      if ((double) diff * diff <= pruningRadius) {
+        search(lo, mid);
+      }
+    }
+  }
+
+  /**
+   * Recursively arranges the cities in [lo, hi) into a balanced subtree, splitting on the axis with the
+   * largest spread.
+   */
+  private void build(int lo, int hi) {
+    if (lo >= hi) {
+      return;
+    }
+
+    int minX = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    for (int i = lo; i < hi; i++) {
+      int x = data.getXCoordinateForCity(cities[i]);
+      int y = data.getYCoordinateForCity(cities[i]);
+      minX = Math.min(minX, x);
+      maxX = Math.max(maxX, x);
+      minY = Math.min(minY, y);
+      maxY = Math.max(maxY, y);
+    }
+
+    int mid = (lo + hi) >>> 1;
+    boolean onX = (long) maxX - minX >= (long) maxY - minY;
+    select(lo, hi - 1, mid, onX);
+    splitOnX[mid] = onX;
+    alive[mid] = hi - lo;
+    minXs[mid] = minX;
+    maxXs[mid] = maxX;
+    minYs[mid] = minY;
+    maxYs[mid] = maxY;
+
+    build(lo, mid);
+    build(mid + 1, hi);
+  }
+
+  /**
+   * Quickselect placing the k-th smallest city along the given axis at index k of [lo, hi], with smaller
+   * or equal coordinates before it and greater or equal ones after it.
+   */
+  private void select(int lo, int hi, int k, boolean onX) {
+    while (lo < hi) {
+      int pivot = coordinate(cities[(lo + hi) >>> 1], onX);
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (coordinate(cities[i], onX) < pivot) {
+          i++;
+        }
+        while (coordinate(cities[j], onX) > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int tmp = cities[i];
+          cities[i] = cities[j];
+          cities[j] = tmp;
+          i++;
+          j--;
+        }
+      }
+
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private int coordinate(int city, boolean onX) {
+    return onX ? data.getXCoordinateForCity(city) : data.getYCoordinateForCity(city);
+  }
+}
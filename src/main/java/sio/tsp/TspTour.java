@@ -1,5 +1,6 @@
 package sio.tsp;
 
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 /**
@@ -13,6 +14,31 @@ public record TspTour(TspData data, int[] tour, long length) {
     return Arrays.copyOf(tour, tour.length);
   }
 
+  /**
+   * Returns a city of the tour, without copying the tour.
+   *
+   * @param position Position in the tour, from 0 to {@link #size()} excluded.
+   * @return City visited at the given position.
+   * @throws IndexOutOfBoundsException if position is out of bounds
+   */
+  public int cityAt(int position) {
+    return tour[position];
+  }
+
+  /**
+   * @return the number of cities of the tour.
+   */
+  public int size() {
+    return tour.length;
+  }
+
+  /**
+   * @return a read-only view of the tour, which does not copy it.
+   */
+  public IntBuffer asBuffer() {
+    return IntBuffer.wrap(tour).asReadOnlyBuffer();
+  }
+
   /**
    * @return String representation of the current tour
    */
@@ -0,0 +1,433 @@
+package sio.tsp;
+
+import java.util.Objects;
+
+/**
+ * <p>Tour being edited, whose length is kept up to date as it is modified, so that improvement heuristics never
+ * recompute it from every distance.</p>
+ *
+ * <p>The tour is a closed cycle stored in a {@link TspMutableTour}, and its tracked length includes the closing
+ * edge. Every move has a query returning the change of length it would cause, in constant time from the
+ * distances around the edges it replaces, and the move itself applies it and updates the length by the same
+ * amount. Queries do not check their arguments, moves do.</p>
+ *
+ * <p>Every move is applied as a sequence of 2-opt moves, which can be reported to a {@link MoveListener}, for
+ * instance to record them and undo them later.</p>
+ *
+ * <p>When the {@value #VALIDATION_PROPERTY} system property is {@code true}, every move is followed by
+ * {@link #validate()}, which recomputes the whole length and fails on any drift. It is meant for debugging, as
+ * it makes every move linear.</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ */
+public final class TspTourEditor {
+
+  /**
+   * Name of the system property validating the length after every move.
+   */
+  public static final String VALIDATION_PROPERTY = "sio.tsp.validateTours";
+
+  private static final boolean VALIDATE = Boolean.getBoolean(VALIDATION_PROPERTY);
+
+  private final TspMutableTour tour;
+  private final TspData data;
+  private long cycleLength;
+  private MoveListener listener;
+
+  private TspTourEditor(final TspMutableTour tour) {
+    this.tour = tour;
+    this.data = tour.getData();
+    this.cycleLength = computeCycleLength();
+  }
+
+  /**
+   * Creates an editor starting from a copy of a tour.
+   *
+   * @param tour Tour to copy.
+   * @return Editor of a tour visiting the cities in the same order.
+   * @throws NullPointerException if {@code tour} is null
+   */
+  public static TspTourEditor of(final TspTour tour) {
+    return new TspTourEditor(TspMutableTour.of(tour));
+  }
+
+  /**
+   * Creates an editor of a tour visiting cities in the given order.
+   *
+   * @param data Data of problem instance.
+   * @param order Cities in order of visit, copied.
+   * @return Editor of the tour.
+   * @throws NullPointerException if an argument is null
+   * @throws IllegalArgumentException if {@code order} is not a permutation of the cities of the instance
+   */
+  public static TspTourEditor of(final TspData data, final int[] order) {
+    return new TspTourEditor(TspMutableTour.of(data, order));
+  }
+
+  /**
+   * Sets the listener notified of every 2-opt move applied to the tour.
+   *
+   * @param listener Listener, or null to stop notifying moves.
+   */
+  public void setMoveListener(final MoveListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Returns the data of the problem instance.
+   *
+   * @return Data of problem instance.
+   */
+  public TspData getData() {
+    return data;
+  }
+
+  /**
+   * Returns the number of cities of the tour.
+   *
+   * @return Number of cities.
+   */
+  public int size() {
+    return tour.size();
+  }
+
+  /**
+   * Returns the city following a city in the tour, see {@link TspMutableTour#next(int)}.
+   *
+   * @param city City index.
+   * @return Next city.
+   * @throws IndexOutOfBoundsException If city is out of bounds.
+   */
+  public int next(int city) {
+    return tour.next(city);
+  }
+
+  /**
+   * Returns the city preceding a city in the tour, see {@link TspMutableTour#prev(int)}.
+   *
+   * @param city City index.
+   * @return Previous city.
+   * @throws IndexOutOfBoundsException If city is out of bounds.
+   */
+  public int prev(int city) {
+    return tour.prev(city);
+  }
+
+  /**
+   * Tells whether b lies on the path going from a to c in the direction of the tour, a and c included.
+   *
+   * @param a First city of the path.
+   * @param b City to locate.
+   * @param c Last city of the path.
+   * @return true if b is on the path.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public boolean between(int a, int b, int c) {
+    return tour.between(a, b, c);
+  }
+
+  /**
+   * Returns the length of the closed tour, edge from the last city to the first one included.
+   *
+   * @return Tracked length of the cycle.
+   */
+  public long cycleLength() {
+    return cycleLength;
+  }
+
+  /**
+   * Returns the length of the tour starting from a city, as given by {@link TspTour#length()}: the length of
+   * the cycle without the edge coming back to that city.
+   *
+   * @param startCity First city.
+   * @return Length of the tour.
+   * @throws IndexOutOfBoundsException If startCity is out of bounds.
+   */
+  public long length(int startCity) {
+    return cycleLength - data.getDistance(tour.prev(startCity), startCity);
+  }
+
+  /**
+   * Returns the change of length of the 2-opt move replacing edges (a, b) and (c, d) with (a, c) and (b, d),
+   * see {@link #twoOptMove(int, int, int, int)}.
+   *
+   * @return Change of length, negative if the move shortens the tour.
+   */
+  public long twoOptDelta(int a, int b, int c, int d) {
+    return (long) data.getDistance(a, c) + data.getDistance(b, d) - data.getDistance(a, b) - data.getDistance(c, d);
+  }
+
+  /**
+   * Applies the 2-opt move replacing edges (a, b) and (c, d) with (a, c) and (b, d), b and d following a and c
+   * in the same direction, either the one of the tour or the opposite one.
+   *
+   * @param a First city of the first edge.
+   * @param b Second city of the first edge.
+   * @param c First city of the second edge.
+   * @param d Second city of the second edge.
+   * @return Change of length.
+   * @throws IllegalArgumentException If the cities do not form two edges in the same direction.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public long twoOptMove(int a, int b, int c, int d) {
+    long delta = twoOptDelta(a, b, c, d);
+    twoOpt(a, b, c, d);
+    return applied(delta);
+  }
+
+  /**
+   * Returns the change of length of reversing the path from a city to another, see {@link #reverse(int, int)}.
+   *
+   * @return Change of length, negative if the move shortens the tour.
+   */
+  public long reverseDelta(int from, int to) {
+    int p = tour.prev(from);
+    int q = tour.next(to);
+    if (p == to) {
+      // the whole cycle, in the opposite direction
+      return 0;
+    }
+    return (long) data.getDistance(p, to) + data.getDistance(from, q)
+          - data.getDistance(p, from) - data.getDistance(to, q);
+  }
+
+  /**
+   * Reverses the path going from a city to another in the direction of the tour, see
+   * {@link TspMutableTour#reverse(int, int)}.
+   *
+   * @param from First city of the path.
+   * @param to Last city of the path.
+   * @return Change of length.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public long reverse(int from, int to) {
+    long delta = reverseDelta(from, to);
+    int p = tour.prev(from);
+    int q = tour.next(to);
+    tour.reverse(from, to);
+    if (listener != null && p != to) {
+      listener.twoOptMoved(p, from, to, q);
+    }
+    return applied(delta);
+  }
+
+  /**
+   * Returns the change of length of moving a segment between a city and the next one, see
+   * {@link #moveSegment(int, int, int, boolean)}.
+   *
+   * @return Change of length, negative if the move shortens the tour.
+   */
+  public long moveSegmentDelta(int s1, int s2, int x, boolean reversed) {
+    int p = tour.prev(s1);
+    int nx = tour.next(s2);
+    int y = tour.next(x);
+    long removed = (long) data.getDistance(p, s1) + data.getDistance(s2, nx) - data.getDistance(p, nx);
+    long inserted = reversed
+          ? (long) data.getDistance(x, s2) + data.getDistance(s1, y) - data.getDistance(x, y)
+          : (long) data.getDistance(x, s1) + data.getDistance(s2, y) - data.getDistance(x, y);
+    return inserted - removed;
+  }
+
+  /**
+   * Moves the path going from s1 to s2 in the direction of the tour between x and the city following it, in
+   * the same direction or reversed. A segment of a single city is moved as is.
+   *
+   * @param s1 First city of the segment.
+   * @param s2 Last city of the segment.
+   * @param x City after which the segment is inserted, outside of the segment and not preceding it.
+   * @param reversed Whether s2 follows x, rather than s1.
+   * @return Change of length.
+   * @throws IllegalArgumentException If x is in the segment or precedes it.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public long moveSegment(int s1, int s2, int x, boolean reversed) {
+    int p = tour.prev(s1);
+    if (x == p || tour.between(s1, x, s2)) {
+      throw new IllegalArgumentException("x must be outside of the segment, and not precede it");
+    }
+
+    long delta = moveSegmentDelta(s1, s2, x, reversed);
+    insert(s1, s2, x, !reversed && s1 != s2);
+    return applied(delta);
+  }
+
+  /**
+   * Moves the segment s1..s2 between x and the city following it, x being outside of the segment and not
+   * preceding it.
+   */
+  private void insert(int s1, int s2, int x, boolean keepOrientation) {
+    int p = tour.prev(s1);
+    int nx = tour.next(s2);
+    int y = tour.next(x);
+    if (y != p) {
+      moveSegment(p, s1, s2, nx, x, y, keepOrientation);
+    } else if (x != nx) {
+      // the 2-opt moves below would reconnect (x, p) and (p, s1) to themselves, which is avoided by working
+      // in the opposite direction: the segment s2..s1 moves between p and x
+      moveSegment(nx, s2, s1, p, p, x, keepOrientation);
+    } else if (keepOrientation) {
+      // p and x are the only cities outside of the segment: p s1..s2 x becomes x s1..s2 p
+      twoOpt(p, s1, s2, x);
+    }
+  }
+
+  /**
+   * Moves the segment s1..s2, between p and nx, between x and y, as a sequence of 2-opt moves.
+   */
+  private void moveSegment(int p, int s1, int s2, int nx, int x, int y, boolean keepOrientation) {
+    // p s1..s2 nx .. x y becomes p x .. nx s2..s1 y
+    twoOpt(p, s1, x, y);
+    if (x != nx) {
+      // then p nx .. x s2..s1 y
+      twoOpt(p, x, nx, s2);
+    }
+    if (keepOrientation) {
+      // then p nx .. x s1..s2 y
+      twoOpt(x, s2, s1, y);
+    }
+  }
+
+  /**
+   * Applies a 2-opt move to the tour, and notifies the listener if any.
+   */
+  private void twoOpt(int a, int b, int c, int d) {
+    tour.twoOptMove(a, b, c, d);
+    if (listener != null) {
+      listener.twoOptMoved(a, b, c, d);
+    }
+  }
+
+  /**
+   * Returns the change of length of exchanging the positions of two cities, see {@link #swap(int, int)}.
+   *
+   * @return Change of length, negative if the move shortens the tour.
+   */
+  public long swapDelta(int a, int b) {
+    if (a == b || tour.size() <= 3) {
+      return 0;
+    }
+    if (tour.next(b) == a) {
+      return swapDelta(b, a);
+    }
+
+    int pa = tour.prev(a);
+    int nb = tour.next(b);
+    if (tour.next(a) == b) {
+      return (long) data.getDistance(pa, b) + data.getDistance(a, nb)
+            - data.getDistance(pa, a) - data.getDistance(b, nb);
+    }
+    int na = tour.next(a);
+    int pb = tour.prev(b);
+    return (long) data.getDistance(pa, b) + data.getDistance(b, na) + data.getDistance(pb, a) + data.getDistance(a, nb)
+          - data.getDistance(pa, a) - data.getDistance(a, na) - data.getDistance(pb, b) - data.getDistance(b, nb);
+  }
+
+  /**
+   * Exchanges the positions of two cities in the tour.
+   *
+   * @param a First city.
+   * @param b Second city.
+   * @return Change of length.
+   * @throws IndexOutOfBoundsException If a city is out of bounds.
+   */
+  public long swap(int a, int b) {
+    Objects.checkIndex(a, tour.size());
+    Objects.checkIndex(b, tour.size());
+    long delta = swapDelta(a, b);
+    if (a == b || tour.size() <= 3) {
+      // every tour of three cities is the same cycle
+      return applied(delta);
+    }
+    if (tour.next(b) == a) {
+      int c = a;
+      a = b;
+      b = c;
+    }
+
+    int pa = tour.prev(a);
+    if (tour.next(a) == b) {
+      twoOpt(pa, a, b, tour.next(b));
+    } else {
+      // b moves before a, then a moves where b was, between pb and nb which are now consecutive, the first
+      // move possibly reversing the direction of the tour
+      int pb = tour.prev(b);
+      int nb = tour.next(b);
+      insert(b, b, pa, false);
+      insert(a, a, tour.next(pb) == nb ? pb : nb, false);
+    }
+    return applied(delta);
+  }
+
+  /**
+   * Recomputes the length of the tour from every distance, and checks that it matches the tracked length.
+   *
+   * @throws IllegalStateException If the tracked length drifted.
+   */
+  public void validate() {
+    long actual = computeCycleLength();
+    if (actual != cycleLength) {
+      throw new IllegalStateException("Tracked length " + cycleLength + " differs from actual length " + actual);
+    }
+  }
+
+  /**
+   * Copies the tour into an array, starting from the given city.
+   *
+   * @param startCity First city.
+   * @param destination Array receiving the cities in order of visit, of length at least {@link #size()}.
+   * @throws IndexOutOfBoundsException If startCity is out of bounds or destination is too short.
+   */
+  public void copyTo(int startCity, int[] destination) {
+    tour.copyTo(startCity, destination);
+  }
+
+  /**
+   * Exports the tour, starting from the given city, with its tracked length.
+   *
+   * @param startCity First city.
+   * @return Immutable tour.
+   * @throws IndexOutOfBoundsException If startCity is out of bounds.
+   */
+  public TspTour toTour(int startCity) {
+    int[] order = new int[size()];
+    tour.copyTo(startCity, order);
+    return new TspTour(data, order, length(startCity));
+  }
+
+  private long applied(long delta) {
+    cycleLength += delta;
+    if (VALIDATE) {
+      validate();
+    }
+    return delta;
+  }
+
+  private long computeCycleLength() {
+    long length = 0;
+    int city = 0;
+    for (int i = 0; i < size(); i++) {
+      int next = tour.next(city);
+      length += data.getDistance(city, next);
+      city = next;
+    }
+    return length;
+  }
+
+  /**
+   * Receives the 2-opt moves applied to a tour, see {@link #setMoveListener(MoveListener)}.
+   */
+  @FunctionalInterface
+  public interface MoveListener {
+
+    /**
+     * Called after edges (a, b) and (c, d) were replaced with (a, c) and (b, d). The 2-opt move replacing edges
+     * (a, c) and (b, d) with (a, b) and (c, d) undoes it.
+     *
+     * @param a First city of the first removed edge.
+     * @param b Second city of the first removed edge.
+     * @param c First city of the second removed edge.
+     * @param d Second city of the second removed edge.
+     */
+    void twoOptMoved(int a, int b, int c, int d);
+  }
+}
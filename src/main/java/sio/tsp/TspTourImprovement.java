@@ -0,0 +1,20 @@
+package sio.tsp;
+
+/**
+ * Improvement heuristic for the TSP, applied to the tour built by a {@link TspConstructiveHeuristic}
+ */
+@FunctionalInterface
+public interface TspTourImprovement {
+	/**
+	 * <p>Computes a tour at least as short as the given one, as a closed cycle, on the same data.</p>
+	 *
+	 * <p>The returned tour starts from the same city as the given one, and its length is computed the same
+	 * way as by the constructive heuristics, from the distances between consecutive cities of the tour.</p>
+	 *
+	 * @param tour Tour to improve
+	 *
+	 * @return Improved tour, possibly the given one
+	 * @throws NullPointerException if {@code tour} is null
+	 */
+	TspTour improve(TspTour tour);
+}
@@ -0,0 +1,71 @@
+package sio.tsp;
+
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Scratch buffers of a constructive heuristic for one problem instance, reused from one tour to the next so
+ * that computing many tours does not allocate once the buffers exist.</p>
+ *
+ * <p>The last tour computed stays readable through {@link #cityAt(int)} until the next computation, and is
+ * only copied into a {@link TspTour} when asked for. A workspace is not thread-safe: every thread computing
+ * tours uses its own, obtained from {@link TspConstructiveHeuristic#newWorkspace(TspData)}.</p>
+ */
+public interface TspWorkspace {
+
+  /**
+   * Length returned by {@link #computeTour(int, LongSupplier)} for a tour exceeding its bound.
+   */
+  long ABANDONED = -1;
+
+  /**
+   * Returns the data of the problem instance.
+   *
+   * @return Data of problem instance.
+   */
+  TspData data();
+
+  /**
+   * Computes a tour, which replaces the previous tour of this workspace.
+   *
+   * @param startCityIndex Index of starting city, if needed by the implementation
+   * @return Length of the tour, as given by {@link TspTour#length()}
+   * @throws IllegalArgumentException if {@code startCityIndex} is not usable by the implementation
+   */
+  long computeTour(int startCityIndex);
+
+  /**
+   * <p>Computes a tour like {@link #computeTour(int)}, unless its length is known to exceed the given bound, in
+   * which case the computation may be abandoned before the tour is complete. The bound may decrease while the
+   * tour is computed, for instance when it is shared with other threads searching for the shortest tour.</p>
+   *
+   * <p>Implementations compare the length of the partial tour plus a lower bound on the length of its remaining
+   * part with the bound. By default, the tour is computed in full, then compared with the bound.</p>
+   *
+   * @param startCityIndex Index of starting city, if needed by the implementation
+   * @param bound Supplier of the length above which the tour is not needed, read as the tour is computed
+   * @return Length of the tour, or {@link #ABANDONED} if it exceeds the bound, after which the tour must not be read
+   * @throws IllegalArgumentException if {@code startCityIndex} is not usable by the implementation
+   */
+  default long computeTour(int startCityIndex, LongSupplier bound) {
+    long length = computeTour(startCityIndex);
+    return length > bound.getAsLong() ? ABANDONED : length;
+  }
+
+  /**
+   * Returns a city of the last tour computed.
+   *
+   * @param position Position in the tour, from 0 to the number of cities excluded.
+   * @return City visited at the given position.
+   * @throws IllegalStateException if no tour was computed yet
+   * @throws IndexOutOfBoundsException if position is out of bounds
+   */
+  int cityAt(int position);
+
+  /**
+   * Returns the last tour computed, copied if needed so that later computations do not change it.
+   *
+   * @return Last tour computed.
+   * @throws IllegalStateException if no tour was computed yet
+   */
+  TspTour toTour();
+}
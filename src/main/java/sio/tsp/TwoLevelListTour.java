@@ -0,0 +1,327 @@
+package sio.tsp;
+
+/**
+ * <p>Tour stored as a doubly-linked list of segments, each segment being a range of an array of cities read
+ * forwards or backwards depending on its reversal bit.</p>
+ *
+ * <p>Reversing a path splits the segments at its ends, then reverses the order of the segments in between
+ * and flips their bits, which takes O(sqrt n) with segments of about sqrt n cities. Splits only shrink
+ * segments, and the array is rewritten with full segments once their number has doubled.</p>
+ */
+final class TwoLevelListTour extends TspMutableTour {
+  private final int n;
+  private final int groupSize;
+  private final int maxSegments;
+
+  // cities, in segments
+  private final int[] order;
+  private final int[] position;
+  private final int[] segmentOf;
+  private final int[] scratch;
+
+  // segments, in a circular list whose ranks increase by one from segment to segment, modulo their number
+  private final int[] first;
+  private final int[] last;
+  private final boolean[] reversed;
+  private final int[] nextSegment;
+  private final int[] prevSegment;
+  private final int[] rank;
+  private final int[] freeSegments;
+  private int freeCount;
+  private int segmentCount;
+
+  TwoLevelListTour(final TspData data, final int[] order) {
+    super(data);
+    this.n = order.length;
+    this.groupSize = (int) Math.ceil(Math.sqrt(n));
+    this.maxSegments = 2 * ((n + groupSize - 1) / groupSize);
+
+    this.order = order.clone();
+    this.position = new int[n];
+    this.segmentOf = new int[n];
+    this.scratch = new int[n];
+
+    // room for the two splits of a reversal done at the limit
+    int capacity = maxSegments + 2;
+    this.first = new int[capacity];
+    this.last = new int[capacity];
+    this.reversed = new boolean[capacity];
+    this.nextSegment = new int[capacity];
+    this.prevSegment = new int[capacity];
+    this.rank = new int[capacity];
+    this.freeSegments = new int[capacity];
+
+    rebuild(this.order[0]);
+  }
+
+  @Override
+  public int next(int city) {
+    int s = segmentOf[city];
+    int i = position[city];
+    if (reversed[s]) {
+      return i > first[s] ? order[i - 1] : head(nextSegment[s]);
+    }
+    return i < last[s] ? order[i + 1] : head(nextSegment[s]);
+  }
+
+  @Override
+  public int prev(int city) {
+    int s = segmentOf[city];
+    int i = position[city];
+    if (reversed[s]) {
+      return i < last[s] ? order[i + 1] : tail(prevSegment[s]);
+    }
+    return i > first[s] ? order[i - 1] : tail(prevSegment[s]);
+  }
+
+  @Override
+  public boolean between(int a, int b, int c) {
+    int sa = segmentOf[a];
+    long ka = key(a, sa);
+    long kb = key(b, sa) - ka;
+    long kc = key(c, sa) - ka;
+    long period = (long) segmentCount << 32;
+    return (kb < 0 ? kb + period : kb) <= (kc < 0 ? kc + period : kc);
+  }
+
+  /**
+   * Orders cities along the tour: segments relative to a reference segment, then index in the segment.
+   */
+  private long key(int city, int reference) {
+    int s = segmentOf[city];
+    int r = rank[s] - rank[reference];
+    if (r < 0) {
+      r += segmentCount;
+    }
+    return ((long) r << 32) | indexInSegment(city, s);
+  }
+
+  @Override
+  public void reverse(int from, int to) {
+    if (from == to) {
+      return;
+    }
+
+    int sf = segmentOf[from];
+    int st = segmentOf[to];
+    if (sf == st) {
+      if (indexInSegment(from, sf) <= indexInSegment(to, sf)) {
+        reverseInSegment(position[from], position[to]);
+      } else if (next(to) != from) {
+        // the path covers the whole tour but a part of this segment, whose reversal gives the same cycle
+        reverseInSegment(position[next(to)], position[prev(from)]);
+      }
+      return;
+    }
+
+    // reverse whichever side spans fewer segments
+    int spanned = rank[st] - rank[sf];
+    if (spanned < 0) {
+      spanned += segmentCount;
+    }
+    if (2 * (spanned + 1) > segmentCount) {
+      int complementFrom = next(to);
+      to = prev(from);
+      from = complementFrom;
+      if (segmentOf[from] == segmentOf[to] && indexInSegment(from, segmentOf[from]) <= indexInSegment(to,
+            segmentOf[to])) {
+        reverseInSegment(position[from], position[to]);
+        return;
+      }
+    }
+
+    if (segmentCount + 2 > maxSegments) {
+      rebuild(from);
+    }
+    splitBefore(from);
+    splitBefore(next(to));
+    reverseSegments(segmentOf[from], segmentOf[to]);
+  }
+
+  @Override
+  public void copyTo(int startCity, int[] destination) {
+    int s = segmentOf[startCity];
+    int count = 0;
+
+    // rest of the first segment, whole segments, then beginning of the first segment
+    count = copyRange(s, position[startCity], reversed[s] ? first[s] : last[s], destination, count);
+    for (int t = nextSegment[s]; t != s; t = nextSegment[t]) {
+      count = copyRange(t, reversed[t] ? last[t] : first[t], reversed[t] ? first[t] : last[t], destination, count);
+    }
+    if (position[startCity] != (reversed[s] ? last[s] : first[s])) {
+      int end = reversed[s] ? position[startCity] + 1 : position[startCity] - 1;
+      copyRange(s, reversed[s] ? last[s] : first[s], end, destination, count);
+    }
+  }
+
+  private int copyRange(int segment, int from, int to, int[] destination, int count) {
+    if (reversed[segment]) {
+      for (int i = from; i >= to; i--) {
+        destination[count++] = order[i];
+      }
+    } else {
+      System.arraycopy(order, from, destination, count, to - from + 1);
+      count += to - from + 1;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the first city of a segment, in the direction of the tour.
+   */
+  private int head(int segment) {
+    return order[reversed[segment] ? last[segment] : first[segment]];
+  }
+
+  /**
+   * Returns the last city of a segment, in the direction of the tour.
+   */
+  private int tail(int segment) {
+    return order[reversed[segment] ? first[segment] : last[segment]];
+  }
+
+  private int indexInSegment(int city, int segment) {
+    return reversed[segment] ? last[segment] - position[city] : position[city] - first[segment];
+  }
+
+  /**
+   * Reverses the cities between two positions of the same segment.
+   */
+  private void reverseInSegment(int i, int j) {
+    if (i > j) {
+      int tmp = i;
+      i = j;
+      j = tmp;
+    }
+    for (; i < j; i++, j--) {
+      int ci = order[i];
+      int cj = order[j];
+      order[i] = cj;
+      position[cj] = i;
+      order[j] = ci;
+      position[ci] = j;
+    }
+  }
+
+  /**
+   * Splits the segment of a city so that the city is the first of its segment. The smaller part is moved to
+   * a new segment.
+   */
+  private void splitBefore(int city) {
+    int s = segmentOf[city];
+    int p = position[city];
+    if (head(s) == city) {
+      return;
+    }
+
+    // physical ranges of the part before the city and of the part starting at it, in the tour direction
+    int beforeFirst = reversed[s] ? p + 1 : first[s];
+    int beforeLast = reversed[s] ? last[s] : p - 1;
+    int afterFirst = reversed[s] ? first[s] : p;
+    int afterLast = reversed[s] ? p : last[s];
+
+    int t = freeSegments[--freeCount];
+    segmentCount++;
+    reversed[t] = reversed[s];
+    if (afterLast - afterFirst <= beforeLast - beforeFirst) {
+      // the new segment follows s
+      first[s] = beforeFirst;
+      last[s] = beforeLast;
+      first[t] = afterFirst;
+      last[t] = afterLast;
+      link(t, nextSegment[s]);
+      link(s, t);
+    } else {
+      // the new segment precedes s
+      first[s] = afterFirst;
+      last[s] = afterLast;
+      first[t] = beforeFirst;
+      last[t] = beforeLast;
+      link(prevSegment[s], t);
+      link(t, s);
+    }
+    for (int i = first[t]; i <= last[t]; i++) {
+      segmentOf[order[i]] = t;
+    }
+
+    // renumber from s, whose rank is kept, so that ranks stay consecutive
+    int r = rank[s];
+    for (int u = nextSegment[s]; u != s; u = nextSegment[u]) {
+      r = r + 1 == segmentCount ? 0 : r + 1;
+      rank[u] = r;
+    }
+  }
+
+  /**
+   * Reverses the order of the segments from a to b included, and flips their bits.
+   */
+  private void reverseSegments(int a, int b) {
+    int before = prevSegment[a];
+    int after = nextSegment[b];
+    int firstRank = rank[a];
+
+    int s = a;
+    while (true) {
+      int following = nextSegment[s];
+      nextSegment[s] = prevSegment[s];
+      prevSegment[s] = following;
+      reversed[s] = !reversed[s];
+      if (s == b) {
+        break;
+      }
+      s = following;
+    }
+
+    if (before == b) {
+      // every segment was reversed, the list is closed on itself
+      link(a, b);
+    } else {
+      link(before, b);
+      link(a, after);
+    }
+
+    int r = firstRank;
+    s = b;
+    while (true) {
+      rank[s] = r;
+      if (s == a) {
+        break;
+      }
+      r = r + 1 == segmentCount ? 0 : r + 1;
+      s = nextSegment[s];
+    }
+  }
+
+  private void link(int a, int b) {
+    nextSegment[a] = b;
+    prevSegment[b] = a;
+  }
+
+  /**
+   * Rewrites the array in the order of the tour starting from the given city, cut in full segments.
+   */
+  private void rebuild(int startCity) {
+    if (segmentCount > 0) {
+      copyTo(startCity, scratch);
+      System.arraycopy(scratch, 0, order, 0, n);
+    }
+
+    segmentCount = (n + groupSize - 1) / groupSize;
+    for (int s = 0; s < segmentCount; s++) {
+      first[s] = s * groupSize;
+      last[s] = Math.min(n, first[s] + groupSize) - 1;
+      reversed[s] = false;
+      rank[s] = s;
+      link(s, s + 1 == segmentCount ? 0 : s + 1);
+      for (int i = first[s]; i <= last[s]; i++) {
+        position[order[i]] = i;
+        segmentOf[order[i]] = s;
+      }
+    }
+
+    freeCount = 0;
+    for (int s = first.length - 1; s >= segmentCount; s--) {
+      freeSegments[freeCount++] = s;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package sio.tsp;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>Distance kernel using the incubating Vector API. Only loaded by {@link DistanceKernel} when the
+ * {@code jdk.incubator.vector} module is present.</p>
+ *
+ * <p>Lanes follow the scalar computation step by step: int differences, conversion to double, sum of
+ * squares, square root, then rounding by adding one half and truncating, which matches {@link Math#round}
+ * for non-negative values.</p>
+ */
+final class VectorDistanceKernel extends DistanceKernel {
+
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INTS =
+        IntVector.SPECIES_PREFERRED.withShape(VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+  private static final VectorSpecies<Integer> FULL_INTS = IntVector.SPECIES_PREFERRED;
+
+  @Override
+  void row(int[] xs, int[] ys, int i, int from, int to, int[] destination, int offset) {
+    int xi = xs[i];
+    int yi = ys[i];
+    int j = from;
+    for (int bound = from + INTS.loopBound(to - from); j < bound; j += INTS.length()) {
+      IntVector dxi = IntVector.fromArray(INTS, xs, j).neg().add(xi);
+      IntVector dyi = IntVector.fromArray(INTS, ys, j).neg().add(yi);
+      DoubleVector dx = (DoubleVector) dxi.convertShape(VectorOperators.I2D, DOUBLES, 0);
+      DoubleVector dy = (DoubleVector) dyi.convertShape(VectorOperators.I2D, DOUBLES, 0);
+      DoubleVector d = dx.mul(dx).add(dy.mul(dy)).sqrt().add(0.5);
+      ((IntVector) d.convertShape(VectorOperators.D2I, INTS, 0)).intoArray(destination, offset + j - from);
+    }
+
+    for (; j < to; j++) {
+      destination[offset + j - from] = distance(xs, ys, i, j);
+    }
+  }
+
+  @Override
+  int nearest(int[] distances, int[] cities, int count) {
+    int bound = FULL_INTS.loopBound(count);
+    IntVector mins = IntVector.broadcast(FULL_INTS, Integer.MAX_VALUE);
+    for (int k = 0; k < bound; k += FULL_INTS.length()) {
+      mins = mins.min(IntVector.fromArray(FULL_INTS, distances, k));
+    }
+    int min = mins.reduceLanes(VectorOperators.MIN);
+    for (int k = bound; k < count; k++) {
+      min = Math.min(min, distances[k]);
+    }
+
+    // only the chunks holding the minimum are searched for the lowest city
+    int best = -1;
+    for (int k = 0; k < bound; k += FULL_INTS.length()) {
+      if (IntVector.fromArray(FULL_INTS, distances, k).eq(min).anyTrue()) {
+        best = lowestCityAt(distances, cities, k, k + FULL_INTS.length(), min, best);
+      }
+    }
+    return lowestCityAt(distances, cities, bound, count, min, best);
+  }
+
+  @Override
+  boolean isVectorized() {
+    return true;
+  }
+}
@@ -0,0 +1,109 @@
+package sio.groupK;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static sio.groupK.NearestNeighborTest.assertTour;
+import static sio.groupK.NearestNeighborTest.sampleStarts;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+
+/**
+ * Checks that {@link DoubleEndsNearestNeighbor} computes the same tours as the scan from both ends over a
+ * {@code next[]} array it replaced, ties included, with the nearest city of each end cached and with the spatial
+ * index.
+ */
+class DoubleEndsNearestNeighborTest {
+
+  @ParameterizedTest
+  @MethodSource("sio.tsp.DistanceStorageTest#datasets")
+  void datasetsMatchReference(Path file) throws Exception {
+    TspData data = TspData.fromFile(file.toString());
+    int[] starts = IntStream.range(0, data.getNumberOfCities()).toArray();
+    assertMatchesReference(data, starts, new DoubleEndsNearestNeighbor());
+    assertMatchesReference(data, sampleStarts(data, 16), new DoubleEndsNearestNeighbor(0));
+  }
+
+  @Test
+  void tiesMatchReference() {
+    TspData data = NearestNeighborTest.ties(NearestNeighborTest.TIES_CITIES, 43);
+    int[] starts = sampleStarts(data, NearestNeighborTest.TIES_STARTS);
+    assertMatchesReference(data, starts, new DoubleEndsNearestNeighbor());
+    assertMatchesReference(data, starts, new DoubleEndsNearestNeighbor(Integer.MAX_VALUE));
+  }
+
+  private static void assertMatchesReference(TspData data, int[] starts, TspConstructiveHeuristic heuristic) {
+    var workspace = heuristic.newWorkspace(data);
+    for (int start : starts) {
+      TspTour expected = Reference.computeTour(data, start);
+      assertTour(expected, heuristic.computeTour(data, start), "start " + start);
+      assertEquals(expected.length(), workspace.computeTour(start, () -> Long.MAX_VALUE), "bounded start " + start);
+      assertTour(expected, workspace.toTour(), "bounded start " + start);
+    }
+  }
+
+  /**
+   * Double ends nearest neighbour before the cache of the nearest city of each end, kept as a reference.
+   */
+  private static final class Reference {
+
+    static TspTour computeTour(TspData data, int startCityIndex) {
+      int[] next = new int[data.getNumberOfCities()];
+      Arrays.fill(next, -1);
+      long distance = 0;
+
+      int s = startCityIndex;
+      int t = startCityIndex;
+      next[s] = s;
+      while (true) {
+        int nearest = -1;
+        int end = -1;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < data.getNumberOfCities(); i++) {
+          if (next[i] >= 0) {
+            continue;
+          }
+          var d1 = data.getDistance(s, i);
+          var d2 = data.getDistance(t, i);
+          if (d1 < nearestDistance) {
+            nearest = i;
+            end = s;
+            nearestDistance = d1;
+          }
+          if (d2 < nearestDistance) {
+            nearest = i;
+            end = t;
+            nearestDistance = d2;
+          }
+        }
+        if (nearest < 0) {
+          break;
+        }
+
+        if (end == s) {
+          next[nearest] = s;
+          next[t] = nearest;
+          s = nearest;
+        } else {
+          next[t] = nearest;
+          next[nearest] = s;
+          t = nearest;
+        }
+        distance += nearestDistance;
+      }
+
+      int[] tour = new int[next.length];
+      for (int i = 0, c = startCityIndex; i < tour.length; i++) {
+        tour[i] = c;
+        c = next[c];
+      }
+      return new TspTour(data, tour, distance);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package sio.groupK;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import sio.tsp.TspConstructiveHeuristic;
+import sio.tsp.TspData;
+import sio.tsp.TspTour;
+
+/**
+ * Checks that {@link NearestNeighbor} computes the same tours as the scan over a {@code next[]} array it
+ * replaced, lowest city index on ties included, with the dense array of unvisited cities and with the spatial
+ * index.
+ */
+class NearestNeighborTest {
+
+  /**
+   * Number of cities of the generated instance, above the default threshold of the spatial index.
+   */
+  static final int TIES_CITIES = 6_000;
+
+  /**
+   * Number of start cities tried on the generated instance.
+   */
+  static final int TIES_STARTS = 24;
+
+  @ParameterizedTest
+  @MethodSource("sio.tsp.DistanceStorageTest#datasets")
+  void datasetsMatchReference(Path file) throws Exception {
+    TspData data = TspData.fromFile(file.toString());
+    int[] starts = IntStream.range(0, data.getNumberOfCities()).toArray();
+    assertMatchesReference(data, starts, new NearestNeighbor());
+    assertMatchesReference(data, sampleStarts(data, 16), new NearestNeighbor(0));
+  }
+
+  @Test
+  void tiesMatchReference() {
+    TspData data = ties(TIES_CITIES, 42);
+    int[] starts = sampleStarts(data, TIES_STARTS);
+    assertMatchesReference(data, starts, new NearestNeighbor());
+    assertMatchesReference(data, starts, new NearestNeighbor(Integer.MAX_VALUE));
+  }
+
+  private static void assertMatchesReference(TspData data, int[] starts, TspConstructiveHeuristic heuristic) {
+    var workspace = heuristic.newWorkspace(data);
+    for (int start : starts) {
+      TspTour expected = Reference.computeTour(data, start);
+      assertTour(expected, heuristic.computeTour(data, start), "start " + start);
+      assertEquals(expected.length(), workspace.computeTour(start, () -> Long.MAX_VALUE), "bounded start " + start);
+      assertTour(expected, workspace.toTour(), "bounded start " + start);
+    }
+  }
+
+  static void assertTour(TspTour expected, TspTour actual, String message) {
+    assertArrayEquals(expected.tour(), actual.tour(), message);
+    assertEquals(expected.length(), actual.length(), message);
+  }
+
+  /**
+   * Start cities spread over the instance.
+   */
+  static int[] sampleStarts(TspData data, int count) {
+    int n = data.getNumberOfCities();
+    return IntStream.range(0, count).map(i -> (int) ((long) i * n / count)).toArray();
+  }
+
+  /**
+   * Instance whose cities lie on a small grid, so that many cities are at the same distance from each other, and
+   * some share their coordinates.
+   */
+  static TspData ties(int n, long seed) {
+    Random random = new Random(seed);
+    int side = (int) Math.sqrt(n * 0.6);
+    int[] xs = new int[n];
+    int[] ys = new int[n];
+    for (int i = 0; i < n; i++) {
+      xs[i] = random.nextInt(side);
+      ys[i] = random.nextInt(side);
+    }
+    return TspData.fromCoordinates(xs, ys);
+  }
+
+  /**
+   * Nearest neighbour before the dense array and the spatial index, kept as a reference.
+   */
+  private static final class Reference {
+
+    static TspTour computeTour(TspData data, int startCityIndex) {
+      int[] next = new int[data.getNumberOfCities()];
+      Arrays.fill(next, -1);
+      long distance = 0;
+
+      int t = startCityIndex;
+      next[startCityIndex] = startCityIndex;
+      while (true) {
+        int nearest = -1;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < data.getNumberOfCities(); i++) {
+          if (next[i] >= 0) {
+            continue;
+          }
+          var d = data.getDistance(t, i);
+          if (d < nearestDistance) {
+            nearest = i;
+            nearestDistance = d;
+          }
+        }
+        if (nearest < 0) {
+          break;
+        }
+
+        next[t] = nearest;
+        next[nearest] = startCityIndex;
+        t = nearest;
+        distance += nearestDistance;
+      }
+
+      int[] tour = new int[next.length];
+      for (int i = 0, s = startCityIndex; i < tour.length; i++) {
+        tour[i] = s;
+        s = next[s];
+      }
+      return new TspTour(data, tour, distance);
+    }
+  }
+}
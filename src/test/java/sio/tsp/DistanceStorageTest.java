@@ -0,0 +1,100 @@
+package sio.tsp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks that every distance storage returns the distances of the original implementation, the rounded
+ * {@link Math#hypot} of the coordinates, on every bundled dataset. The build runs these tests twice, with and
+ * without the {@code jdk.incubator.vector} module, so that both kernels fill the storages.
+ */
+class DistanceStorageTest {
+
+  private static final List<TspDistanceStorage> STORAGES = List.of(
+        TspDistanceStorage.MATRIX,
+        TspDistanceStorage.TRIANGULAR,
+        TspDistanceStorage.ROW_CACHE,
+        TspDistanceStorage.ON_THE_FLY
+  );
+
+  static List<Path> datasets() throws IOException {
+    try (Stream<Path> files = Files.list(Path.of("data"))) {
+      return files.filter(file -> file.toString().endsWith(".dat")).sorted().toList();
+    }
+  }
+
+  static Stream<Arguments> datasetsAndStorages() throws IOException {
+    return datasets().stream().flatMap(file -> STORAGES.stream().map(storage -> Arguments.of(file, storage)));
+  }
+
+  @ParameterizedTest
+  @MethodSource("datasetsAndStorages")
+  void storageMatchesRoundedHypot(Path file, TspDistanceStorage storage) throws Exception {
+    TspData data = TspData.fromFile(file.toString(), storage);
+    assertEquals(storage, data.getDistanceStorage());
+
+    int n = data.getNumberOfCities();
+    int[] row = new int[n];
+    for (int i = 0; i < n; i++) {
+      int[] expected = hypotRow(data, i);
+      for (int j = 0; j < n; j++) {
+        assertEquals(expected[j], data.getDistance(i, j), "distance " + i + ", " + j);
+      }
+      data.getDistances(i, row);
+      assertArrayEquals(expected, row, "row " + i);
+    }
+  }
+
+  @Test
+  void kernelInUseMatchesModulePresence() {
+    boolean vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    assertEquals(vectorModule, DistanceKernel.INSTANCE.isVectorized());
+  }
+
+  @ParameterizedTest
+  @MethodSource("datasets")
+  void scalarKernelMatchesRoundedHypot(Path file) throws Exception {
+    assertKernelMatchesRoundedHypot(new DistanceKernel.Scalar(), file);
+  }
+
+  static void assertKernelMatchesRoundedHypot(DistanceKernel kernel, Path file) throws Exception {
+    TspData data = TspData.fromFile(file.toString(), TspDistanceStorage.ON_THE_FLY);
+    int n = data.getNumberOfCities();
+    int[] xs = new int[n];
+    int[] ys = new int[n];
+    for (int i = 0; i < n; i++) {
+      xs[i] = data.getXCoordinateForCity(i);
+      ys[i] = data.getYCoordinateForCity(i);
+    }
+
+    int[] row = new int[n];
+    for (int i = 0; i < n; i++) {
+      kernel.row(xs, ys, i, 0, n, row, 0);
+      assertArrayEquals(hypotRow(data, i), row, "row " + i);
+    }
+  }
+
+  /**
+   * Distances from a city computed as by the original implementation.
+   */
+  static int[] hypotRow(TspData data, int i) {
+    int n = data.getNumberOfCities();
+    int[] row = new int[n];
+    for (int j = 0; j < n; j++) {
+      double dx = data.getXCoordinateForCity(i) - data.getXCoordinateForCity(j);
+      double dy = data.getYCoordinateForCity(i) - data.getYCoordinateForCity(j);
+      row[j] = (int) Math.round(Math.hypot(dx, dy));
+    }
+    return row;
+  }
+}
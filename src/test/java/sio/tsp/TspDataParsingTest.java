@@ -0,0 +1,163 @@
+package sio.tsp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks that {@link DatParser}, through {@link TspData#fromFile(String)}, {@link TspData#fromPath(Path)} and
+ * {@link TspData#fromStream(InputStream)}, reads the same instances and rejects the same inputs with the same
+ * messages as the {@link Scanner} based parsing it replaced.
+ */
+class TspDataParsingTest {
+
+  @TempDir
+  Path directory;
+
+  @ParameterizedTest
+  @MethodSource("sio.tsp.DistanceStorageTest#datasets")
+  void datasetsMatchScanner(Path file) throws Exception {
+    Coordinates expected = ScannerParser.parse(file);
+
+    assertCoordinates(expected, TspData.fromFile(file.toString()));
+    assertCoordinates(expected, TspData.fromPath(file));
+    try (InputStream stream = Files.newInputStream(file)) {
+      assertCoordinates(expected, TspData.fromStream(stream));
+    }
+  }
+
+  static Stream<Arguments> inputs() {
+    return Stream.of(
+          Arguments.of("empty", "", "Invalid data. Empty data."),
+          Arguments.of("blank", "  \n\n", "Invalid data. Empty data."),
+          Arguments.of("bad count", "abc\n",
+                "Invalid data value. Invalid number of cities in first line of data file."),
+          Arguments.of("too small", "2\n0 1 1\n1 2 2\n",
+                "Invalid data value. Number of cities should be at least 3."),
+          Arguments.of("bad coordinate", "3\n0 1 1\n1 x 2\n2 3 3\n",
+                "Invalid data value. City numbers and coordinates should be non negative integers."),
+          Arguments.of("dash", "3\n0 1 1\n1 - 2\n2 3 3\n",
+                "Invalid data value. City numbers and coordinates should be non negative integers."),
+          Arguments.of("trailing letter", "3\r\n0 1 1\r\n1 1x 2\n2 3 3\n",
+                "Invalid data value. City numbers and coordinates should be non negative integers."),
+          Arguments.of("overflow", "3\n0 99999999999 1\n1 2 2\n2 3 3\n",
+                "Invalid data value. City numbers and coordinates should be non negative integers."),
+          Arguments.of("incomplete", "3\n0 1 1\n1 2\n",
+                "Incomplete line : should follow format \"<city number> <x> <y>\""),
+          Arguments.of("out of order", "3\n0 1 1\n2 2 2\n1 3 3\n",
+                "Invalid city number: 2 expected, 1 read."),
+          Arguments.of("first out of order", "3\n1 1 1\n1 x 2\n2 3 3\n",
+                "Invalid city number: 1 expected, 0 read."),
+          Arguments.of("limits", "3\n0 2147483647 -2147483648\n1 2 2\n2 3 3 extra\n", null),
+          Arguments.of("signs", "3\n0 -1 1\n1 +2 2\n2 3 3\n", null)
+    );
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("inputs")
+  void inputsMatchScanner(String name, String content, String message) throws Exception {
+    Path file = directory.resolve(name.replace(' ', '_') + ".dat");
+    Files.writeString(file, content, StandardCharsets.US_ASCII);
+
+    if (message == null) {
+      Coordinates expected = ScannerParser.parse(file);
+      assertCoordinates(expected, TspData.fromFile(file.toString()));
+      assertCoordinates(expected, TspData.fromPath(file));
+      assertCoordinates(expected, TspData.fromStream(new ByteArrayInputStream(content.getBytes())));
+      return;
+    }
+
+    assertEquals(message, assertThrows(TspParsingException.class, () -> ScannerParser.parse(file)).getMessage());
+    assertEquals(message,
+          assertThrows(TspParsingException.class, () -> TspData.fromFile(file.toString())).getMessage());
+    assertEquals(message, assertThrows(TspParsingException.class, () -> TspData.fromPath(file)).getMessage());
+    assertEquals(message, assertThrows(TspParsingException.class,
+          () -> TspData.fromStream(new ByteArrayInputStream(content.getBytes()))).getMessage());
+  }
+
+  @Test
+  void missingFileMatchesFileReader() {
+    String missing = directory.resolve("missing.dat").toString();
+    String expected = assertThrows(FileNotFoundException.class, () -> new FileReader(missing)).getMessage();
+    assertEquals(expected, assertThrows(FileNotFoundException.class, () -> TspData.fromFile(missing)).getMessage());
+  }
+
+  private static void assertCoordinates(Coordinates expected, TspData data) {
+    int n = data.getNumberOfCities();
+    int[] xs = new int[n];
+    int[] ys = new int[n];
+    for (int i = 0; i < n; i++) {
+      xs[i] = data.getXCoordinateForCity(i);
+      ys[i] = data.getYCoordinateForCity(i);
+    }
+    assertArrayEquals(expected.xs(), xs);
+    assertArrayEquals(expected.ys(), ys);
+  }
+
+  private record Coordinates(int[] xs, int[] ys) {
+  }
+
+  /**
+   * Parsing of {@link TspData#fromFile(String)} before it used {@link DatParser}, kept as a reference.
+   */
+  private static final class ScannerParser {
+
+    static Coordinates parse(Path file) throws TspParsingException, FileNotFoundException {
+      try (Scanner scanner = new Scanner(new BufferedReader(new FileReader(file.toFile())))) {
+        if (!scanner.hasNext()) {
+          throw new TspParsingException("Invalid data. Empty data.");
+        }
+
+        int numberOfCities;
+        try {
+          numberOfCities = scanner.nextInt();
+        } catch (InputMismatchException e) {
+          throw new TspParsingException("Invalid data value. Invalid number of cities in first line of data file.");
+        } catch (NoSuchElementException e) {
+          throw new TspParsingException("Invalid data format. Empty data file.");
+        }
+        if (numberOfCities < 3) {
+          throw new TspParsingException("Invalid data value. Number of cities should be at least 3.");
+        }
+
+        int[] xs = new int[numberOfCities];
+        int[] ys = new int[numberOfCities];
+        for (int cityReadCount = 0; cityReadCount < numberOfCities; cityReadCount++) {
+          try {
+            int cityNumber = scanner.nextInt();
+            if (cityNumber != cityReadCount) {
+              throw new TspParsingException(
+                    String.format("Invalid city number: %s expected, %s read.", cityNumber, cityReadCount));
+            }
+            xs[cityNumber] = scanner.nextInt();
+            ys[cityNumber] = scanner.nextInt();
+          } catch (InputMismatchException e) {
+            throw new TspParsingException(
+                  "Invalid data value. City numbers and coordinates should be non negative integers.");
+          } catch (NoSuchElementException e) {
+            throw new TspParsingException("Incomplete line : should follow format \"<city number> <x> <y>\"");
+          }
+        }
+        return new Coordinates(xs, ys);
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package sio.tsp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks that {@link TspSnapshot} reads back the instances of the text loader, falls back to it when a snapshot
+ * is stale, and rejects corrupted snapshots.
+ */
+class TspSnapshotTest {
+
+  private static final String SMALL = "5\n0 0 0\n1 3 4\n2 10 0\n3 7 7\n4 1 9\n";
+
+  @TempDir
+  Path directory;
+
+  static Stream<Arguments> datasetsWithAndWithoutDistances() throws Exception {
+    return DistanceStorageTest.datasets().stream()
+          .flatMap(file -> Stream.of(Arguments.of(file, true), Arguments.of(file, false)));
+  }
+
+  @ParameterizedTest
+  @MethodSource("datasetsWithAndWithoutDistances")
+  void snapshotMatchesTextLoader(Path file, boolean includeDistances) throws Exception {
+    TspData expected = TspData.fromFile(file.toString());
+    Path snapshot = directory.resolve(file.getFileName() + TspSnapshot.EXTENSION);
+    TspSnapshot.write(expected, snapshot, file, includeDistances);
+    TspSnapshot.verify(snapshot);
+
+    assertSameInstance(expected, TspSnapshot.read(snapshot));
+    assertSameInstance(expected, TspSnapshot.load(file, snapshot, includeDistances));
+  }
+
+  @Test
+  void staleSnapshotIsRebuiltFromSource() throws Exception {
+    Path source = directory.resolve("small.dat");
+    Files.writeString(source, SMALL, StandardCharsets.US_ASCII);
+    Path snapshot = directory.resolve("small.dat" + TspSnapshot.EXTENSION);
+    TspData original = TspSnapshot.load(source, snapshot, true);
+    assertTrue(Files.isRegularFile(snapshot));
+    assertSameInstance(TspData.fromPath(source), original);
+
+    // same size, different content and modification time
+    Files.writeString(source, SMALL.replace("1 3 4", "1 5 4"), StandardCharsets.US_ASCII);
+    Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 2000));
+
+    TspData expected = TspData.fromPath(source);
+    assertEquals(5, expected.getXCoordinateForCity(1));
+    assertSameInstance(expected, TspSnapshot.load(source, snapshot, true));
+    assertSameInstance(expected, TspSnapshot.read(snapshot));
+  }
+
+  static Stream<Arguments> corruptions() {
+    return Stream.of(
+          Arguments.of("magic", 0, "Invalid snapshot. Not a snapshot file."),
+          Arguments.of("version", 4, "Invalid snapshot. Unsupported version 1025."),
+          Arguments.of("number of cities", 12, "Invalid snapshot. Unexpected size."),
+          Arguments.of("coordinates", 48 + 4, "Invalid snapshot. Checksum mismatch."),
+          Arguments.of("coordinates checksum", 32, "Invalid snapshot. Checksum mismatch.")
+    );
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("corruptions")
+  void corruptedSnapshotIsRejected(String name, int offset, String message) throws Exception {
+    Path source = directory.resolve("small.dat");
+    Files.writeString(source, SMALL, StandardCharsets.US_ASCII);
+    Path snapshot = directory.resolve("small.dat" + TspSnapshot.EXTENSION);
+    TspSnapshot.load(source, snapshot, true);
+
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer value = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+      channel.read(value, offset);
+      value.flip();
+      int corrupted = value.getInt(0) ^ 0x400;
+      value.clear();
+      value.putInt(corrupted).flip();
+      channel.write(value, offset);
+    }
+
+    assertEquals(message, assertThrows(TspParsingException.class, () -> TspSnapshot.read(snapshot)).getMessage());
+    assertEquals(message, assertThrows(TspParsingException.class, () -> TspSnapshot.verify(snapshot)).getMessage());
+
+    // loading falls back to the source and rewrites the snapshot
+    assertSameInstance(TspData.fromPath(source), TspSnapshot.load(source, snapshot, true));
+    TspSnapshot.verify(snapshot);
+  }
+
+  @Test
+  void corruptedDistancesAreFoundByVerify() throws Exception {
+    Path source = directory.resolve("small.dat");
+    Files.writeString(source, SMALL, StandardCharsets.US_ASCII);
+    Path snapshot = directory.resolve("small.dat" + TspSnapshot.EXTENSION);
+    TspSnapshot.load(source, snapshot, true);
+
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {1}), Files.size(snapshot) - 4);
+    }
+
+    TspSnapshot.read(snapshot);
+    assertEquals("Invalid snapshot. Checksum mismatch.",
+          assertThrows(TspParsingException.class, () -> TspSnapshot.verify(snapshot)).getMessage());
+  }
+
+  private static void assertSameInstance(TspData expected, TspData actual) {
+    int n = expected.getNumberOfCities();
+    assertEquals(n, actual.getNumberOfCities());
+    int[] expectedRow = new int[n];
+    int[] actualRow = new int[n];
+    for (int i = 0; i < n; i++) {
+      assertEquals(expected.getXCoordinateForCity(i), actual.getXCoordinateForCity(i), "x of " + i);
+      assertEquals(expected.getYCoordinateForCity(i), actual.getYCoordinateForCity(i), "y of " + i);
+      expected.getDistances(i, expectedRow);
+      actual.getDistances(i, actualRow);
+      assertArrayEquals(expectedRow, actualRow, "row " + i);
+      for (int j = 0; j < n; j++) {
+        assertEquals(expectedRow[j], actual.getDistance(i, j), "distance " + i + ", " + j);
+      }
+    }
+  }
+}
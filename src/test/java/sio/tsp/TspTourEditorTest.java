@@ -0,0 +1,252 @@
+package sio.tsp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that every move of {@link TspTourEditor} changes the tracked length by what its delta query returned,
+ * that the tracked length matches a full recomputation, and that the moves reported to a
+ * {@link TspTourEditor.MoveListener} undo back to the original cycle.
+ */
+class TspTourEditorTest {
+
+  private static final int MOVES = 5_000;
+
+  @ParameterizedTest
+  @ValueSource(ints = {4, 5, 6, 7, 8, 13, 40, 200})
+  void deltasMatchAppliedMoves(int n) {
+    SplittableRandom random = new SplittableRandom(n);
+    TspData data = randomInstance(n, random);
+    TspTourEditor editor = TspTourEditor.of(data, identity(n));
+
+    for (int move = 0; move < MOVES; move++) {
+      long before = editor.cycleLength();
+      long delta = randomMove(editor, random);
+      assertEquals(before + delta, editor.cycleLength(), "move " + move);
+      editor.validate();
+    }
+
+    int start = random.nextInt(n);
+    TspTour tour = editor.toTour(start);
+    assertEquals(start, tour.cityAt(0));
+    assertEquals(openLength(data, tour.tour()), tour.length());
+  }
+
+  @Test
+  void segmentMovesCoverEveryInsertion() {
+    SplittableRandom random = new SplittableRandom(1);
+    TspData data = randomInstance(8, random);
+    for (boolean reversed : new boolean[] {false, true}) {
+      // x follows the segment: 0 [1 2] 3 4 .. becomes 0 3 [1 2] 4 ..
+      assertSegmentMove(data, 1, 2, 3, reversed);
+      // x precedes p, so that y is p: .. 5 6 [7 0] 1 becomes .. 5 [7 0] 6 1
+      assertSegmentMove(data, 7, 0, 5, reversed);
+      // x and p are the only other cities: 0 [1 .. 6] 7 becomes 7 [1 .. 6] 0
+      assertSegmentMove(data, 1, 6, 7, reversed);
+      // any other city
+      assertSegmentMove(data, 2, 4, 6, reversed);
+      // single city
+      assertSegmentMove(data, 2, 2, 6, reversed);
+    }
+
+    TspTourEditor editor = TspTourEditor.of(data, identity(8));
+    assertThrows(IllegalArgumentException.class, () -> editor.moveSegment(2, 4, 1, false));
+    assertThrows(IllegalArgumentException.class, () -> editor.moveSegment(2, 4, 3, false));
+  }
+
+  @Test
+  void swapsCoverEveryCase() {
+    TspData data = randomInstance(8, new SplittableRandom(2));
+    // distant cities, consecutive cities in both orders, the same city, and the last and first cities
+    int[][] pairs = {{1, 5}, {3, 4}, {4, 3}, {6, 6}, {7, 0}, {0, 7}};
+    for (int[] pair : pairs) {
+      TspTourEditor editor = TspTourEditor.of(data, identity(8));
+      long delta = editor.swapDelta(pair[0], pair[1]);
+      assertEquals(delta, editor.swap(pair[0], pair[1]));
+      editor.validate();
+
+      int[] expected = identity(8);
+      expected[pair[0]] = pair[1];
+      expected[pair[1]] = pair[0];
+      assertSameCycle(expected, editor);
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {5, 8, 13, 40, 200})
+  void listenerJournalUndoesMoves(int n) {
+    SplittableRandom random = new SplittableRandom(n + 1);
+    TspData data = randomInstance(n, random);
+    TspTourEditor editor = TspTourEditor.of(data, identity(n));
+    List<int[]> journal = new ArrayList<>();
+
+    for (int round = 0; round < 200; round++) {
+      int[] before = new int[n];
+      editor.copyTo(0, before);
+      long length = editor.cycleLength();
+
+      journal.clear();
+      editor.setMoveListener((a, b, c, d) -> journal.add(new int[] {a, b, c, d}));
+      for (int move = random.nextInt(20); move >= 0; move--) {
+        randomMove(editor, random);
+      }
+      editor.setMoveListener(null);
+
+      // keep some of the rounds, so that the next ones start from other tours
+      if (random.nextBoolean()) {
+        for (int i = journal.size() - 1; i >= 0; i--) {
+          int[] move = journal.get(i);
+          editor.twoOptMove(move[0], move[2], move[1], move[3]);
+        }
+        assertEquals(length, editor.cycleLength());
+        editor.validate();
+        assertSameCycle(before, editor);
+      }
+    }
+  }
+
+  /**
+   * Applies a random valid move, checking that it changes the length by its delta.
+   *
+   * @return Change of length.
+   */
+  private static long randomMove(TspTourEditor editor, SplittableRandom random) {
+    int n = editor.size();
+    while (true) {
+      switch (random.nextInt(4)) {
+        case 0 -> {
+          int a = random.nextInt(n);
+          int c = random.nextInt(n);
+          boolean forward = random.nextBoolean();
+          int b = forward ? editor.next(a) : editor.prev(a);
+          int d = forward ? editor.next(c) : editor.prev(c);
+          if (a == c || b == c || d == a) {
+            continue;
+          }
+          long delta = editor.twoOptDelta(a, b, c, d);
+          assertEquals(delta, editor.twoOptMove(a, b, c, d));
+          assertTrue(adjacent(editor, a, c) && adjacent(editor, b, d));
+          return delta;
+        }
+        case 1 -> {
+          int from = random.nextInt(n);
+          int to = advance(editor, from, random.nextInt(n));
+          long delta = editor.reverseDelta(from, to);
+          assertEquals(delta, editor.reverse(from, to));
+          return delta;
+        }
+        case 2 -> {
+          int s1 = random.nextInt(n);
+          int s2 = advance(editor, s1, random.nextInt(n - 2));
+          int x = random.nextInt(n);
+          if (x == editor.prev(s1) || editor.between(s1, x, s2)) {
+            continue;
+          }
+          return assertSegmentMove(editor, s1, s2, x, random.nextBoolean());
+        }
+        default -> {
+          int a = random.nextInt(n);
+          int b = random.nextInt(n);
+          long delta = editor.swapDelta(a, b);
+          assertEquals(delta, editor.swap(a, b));
+          return delta;
+        }
+      }
+    }
+  }
+
+  private static void assertSegmentMove(TspData data, int s1, int s2, int x, boolean reversed) {
+    TspTourEditor editor = TspTourEditor.of(data, identity(data.getNumberOfCities()));
+    assertSegmentMove(editor, s1, s2, x, reversed);
+    editor.validate();
+  }
+
+  /**
+   * Moves a segment, checking its delta and that it lies between x and the city which followed it.
+   */
+  private static long assertSegmentMove(TspTourEditor editor, int s1, int s2, int x, boolean reversed) {
+    int y = editor.next(x);
+    int length = 0;
+    for (int city = s1; city != s2; city = editor.next(city)) {
+      length++;
+    }
+
+    long delta = editor.moveSegmentDelta(s1, s2, x, reversed);
+    assertEquals(delta, editor.moveSegment(s1, s2, x, reversed));
+
+    int first = reversed && s1 != s2 ? s2 : s1;
+    int last = reversed && s1 != s2 ? s1 : s2;
+    assertTrue(adjacent(editor, x, first), "x next to the segment");
+    assertTrue(adjacent(editor, last, y), "y next to the segment");
+    boolean forward = editor.next(x) == first;
+    int city = first;
+    for (int i = 0; i < length; i++) {
+      city = forward ? editor.next(city) : editor.prev(city);
+    }
+    assertEquals(last, city, "segment kept contiguous");
+    return delta;
+  }
+
+  /**
+   * Checks that the editor holds the given cycle, in either direction.
+   */
+  private static void assertSameCycle(int[] expected, TspTourEditor editor) {
+    int n = expected.length;
+    int[] actual = new int[n];
+    editor.copyTo(expected[0], actual);
+    if (n > 2 && actual[1] != expected[1]) {
+      for (int i = 1; i <= n / 2; i++) {
+        int city = actual[i];
+        actual[i] = actual[n - i];
+        actual[n - i] = city;
+      }
+    }
+    assertArrayEquals(expected, actual);
+  }
+
+  private static boolean adjacent(TspTourEditor editor, int a, int b) {
+    return editor.next(a) == b || editor.prev(a) == b;
+  }
+
+  private static int advance(TspTourEditor editor, int city, int steps) {
+    for (int i = 0; i < steps; i++) {
+      city = editor.next(city);
+    }
+    return city;
+  }
+
+  private static long openLength(TspData data, int[] tour) {
+    long length = 0;
+    for (int i = 1; i < tour.length; i++) {
+      length += data.getDistance(tour[i - 1], tour[i]);
+    }
+    return length;
+  }
+
+  private static TspData randomInstance(int n, SplittableRandom random) {
+    int[] xs = new int[n];
+    int[] ys = new int[n];
+    for (int i = 0; i < n; i++) {
+      xs[i] = random.nextInt(10_000);
+      ys[i] = random.nextInt(10_000);
+    }
+    return TspData.fromCoordinates(xs, ys);
+  }
+
+  private static int[] identity(int n) {
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    return order;
+  }
+}
@@ -0,0 +1,89 @@
+package sio.tsp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that {@link TwoLevelListTour} keeps the same cycle as {@link ArrayTour} under the same sequence of
+ * reversals and 2-opt moves. Small instances give segments of a few cities, so that moves split, merge and
+ * rebuild segments constantly. Either tour may reverse the complement of a path, so the cycles are compared up
+ * to their orientation.
+ */
+class TwoLevelListTourTest {
+
+  private static final int MOVES = 3_000;
+
+  @ParameterizedTest
+  @ValueSource(ints = {5, 6, 9, 16, 17, 50, 101, 400})
+  void matchesArrayTour(int n) {
+    SplittableRandom random = new SplittableRandom(n);
+    int[] xs = new int[n];
+    int[] ys = new int[n];
+    for (int i = 0; i < n; i++) {
+      xs[i] = random.nextInt(1_000);
+      ys[i] = random.nextInt(1_000);
+    }
+    TspData data = TspData.fromCoordinates(xs, ys);
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      int j = random.nextInt(i + 1);
+      order[i] = order[j];
+      order[j] = i;
+    }
+
+    TspMutableTour expected = new ArrayTour(data, order);
+    TspMutableTour actual = new TwoLevelListTour(data, order);
+    assertSameCycle(expected, actual, random, "initial");
+
+    for (int move = 0; move < MOVES; move++) {
+      boolean sameDirection = expected.next(0) == actual.next(0);
+      if (random.nextBoolean()) {
+        int from = random.nextInt(n);
+        int to = random.nextInt(n);
+        expected.reverse(from, to);
+        // the path from a city to another follows the direction of each tour
+        if (sameDirection) {
+          actual.reverse(from, to);
+        } else {
+          actual.reverse(to, from);
+        }
+      } else {
+        int a = random.nextInt(n);
+        int c = random.nextInt(n);
+        boolean forward = random.nextBoolean();
+        int b = forward ? expected.next(a) : expected.prev(a);
+        int d = forward ? expected.next(c) : expected.prev(c);
+        if (a == c || b == c || d == a) {
+          continue;
+        }
+        expected.twoOptMove(a, b, c, d);
+        actual.twoOptMove(a, b, c, d);
+      }
+      assertSameCycle(expected, actual, random, "move " + move);
+    }
+  }
+
+  private static void assertSameCycle(TspMutableTour expected, TspMutableTour actual, SplittableRandom random,
+                                      String message) {
+    int n = expected.size();
+    assertEquals(n, actual.size(), message);
+    boolean sameDirection = expected.next(0) == actual.next(0);
+    for (int city = 0; city < n; city++) {
+      int next = sameDirection ? actual.next(city) : actual.prev(city);
+      int prev = sameDirection ? actual.prev(city) : actual.next(city);
+      assertEquals(expected.next(city), next, message + ", next of " + city);
+      assertEquals(expected.prev(city), prev, message + ", prev of " + city);
+    }
+
+    for (int i = 0; i < 4 * n; i++) {
+      int a = random.nextInt(n);
+      int b = random.nextInt(n);
+      int c = random.nextInt(n);
+      boolean between = sameDirection ? actual.between(a, b, c) : actual.between(c, b, a);
+      assertEquals(expected.between(a, b, c), between, message + ", between " + a + ", " + b + ", " + c);
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package sio.tsp;
+
+import java.nio.file.Path;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Checks the vectorised kernel against the original distances. Only run by the build with the
+ * {@code jdk.incubator.vector} module added.
+ */
+class VectorDistanceKernelTest {
+
+  @ParameterizedTest
+  @MethodSource("sio.tsp.DistanceStorageTest#datasets")
+  void vectorKernelMatchesRoundedHypot(Path file) throws Exception {
+    // loaded by name, as the tests are compiled without the module
+    var kernel = (DistanceKernel) Class.forName("sio.tsp.VectorDistanceKernel").getDeclaredConstructor().newInstance();
+    DistanceStorageTest.assertKernelMatchesRoundedHypot(kernel, file);
+  }
+}